@@ -1,50 +1,190 @@
 package it.easyfin.app.archivio;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
- * Archivio in memoria per la gestione dei token di autenticazione
+ * Archivio in memoria delle sessioni di autenticazione
+ *
+ * Ogni token è associato a un Principale (utente, conto, email) e scade
+ * dopo un periodo di inattività o comunque dopo una durata massima.
+ * Le scadenze sono gestite da una ruota temporale: il token viene inserito
+ * nello slot della sua scadenza e lo spazzino, a ogni scatto, controlla
+ * solo lo slot corrente. Gli accessi non spostano il token: se al controllo
+ * la sessione risulta ancora attiva viene ripianificata.
  */
 @Component
 public class ArchivioMemoria {
-    
-    private final Map<String, String> tokenToEmail = new ConcurrentHashMap<>();
-    
+
+    private final Map<String, Sessione> sessioni = new ConcurrentHashMap<>();
+
+    private final long ttlInattivitaMs;
+    private final long ttlAssolutoMs;
+    private final RuotaScadenze ruota;
+
+    public ArchivioMemoria(@Value("${easyfin.sessioni.ttl-inattivita-ms:1800000}") long ttlInattivitaMs,
+                           @Value("${easyfin.sessioni.ttl-assoluto-ms:28800000}") long ttlAssolutoMs,
+                           @Value("${easyfin.sessioni.granularita-ms:1000}") long granularitaMs,
+                           @Value("${easyfin.sessioni.slot:512}") int slot) {
+        this.ttlInattivitaMs = ttlInattivitaMs;
+        this.ttlAssolutoMs = ttlAssolutoMs;
+        this.ruota = new RuotaScadenze(granularitaMs, slot, System.currentTimeMillis());
+    }
+
     /**
-     * Associa un token a un'email
+     * Associa un token a un principale
      */
-    public void associa(String token, String email) {
-        tokenToEmail.put(token, email);
+    public void associa(String token, Principale principale) {
+        long adesso = System.currentTimeMillis();
+        Sessione sessione = new Sessione(principale, adesso);
+        sessioni.put(token, sessione);
+        ruota.pianifica(token, sessione.scadenza(ttlInattivitaMs, ttlAssolutoMs));
     }
-    
+
     /**
-     * Ottiene l'email associata a un token
+     * Ottiene il principale associato a un token e ne rinnova l'inattività
+     *
+     * @return il principale, oppure null se il token non esiste o è scaduto
      */
-    public String emailPer(String token) {
-        return tokenToEmail.get(token);
+    public Principale principalePer(String token) {
+        Sessione sessione = sessioni.get(token);
+        if (sessione == null) {
+            return null;
+        }
+
+        long adesso = System.currentTimeMillis();
+        if (sessione.scadenza(ttlInattivitaMs, ttlAssolutoMs) <= adesso) {
+            sessioni.remove(token, sessione);
+            return null;
+        }
+
+        sessione.ultimoAccesso = adesso;
+        return sessione.principale;
     }
-    
+
     /**
      * Rimuove un token dall'archivio
      */
     public void rimuovi(String token) {
-        tokenToEmail.remove(token);
+        sessioni.remove(token);
     }
-    
+
     /**
      * Verifica se un token esiste
      */
     public boolean esiste(String token) {
-        return tokenToEmail.containsKey(token);
+        return sessioni.containsKey(token);
     }
-    
+
     /**
      * Conta il numero di token attivi
      */
     public int contaToken() {
-        return tokenToEmail.size();
+        return sessioni.size();
+    }
+
+    /**
+     * Spazzino delle sessioni scadute, eseguito a ogni scatto della ruota
+     */
+    @Scheduled(fixedRateString = "${easyfin.sessioni.granularita-ms:1000}")
+    public void rimuoviScadute() {
+        long adesso = System.currentTimeMillis();
+        ruota.avanza(adesso, token -> {
+            Sessione sessione = sessioni.get(token);
+            if (sessione == null) {
+                return;
+            }
+            long scadenza = sessione.scadenza(ttlInattivitaMs, ttlAssolutoMs);
+            if (scadenza <= adesso) {
+                sessioni.remove(token, sessione);
+            } else {
+                ruota.pianifica(token, scadenza);
+            }
+        });
+    }
+
+    /**
+     * Sessione attiva: principale, istante di creazione e ultimo accesso
+     */
+    private static final class Sessione {
+
+        final Principale principale;
+        final long creata;
+        volatile long ultimoAccesso;
+
+        Sessione(Principale principale, long creata) {
+            this.principale = principale;
+            this.creata = creata;
+            this.ultimoAccesso = creata;
+        }
+
+        long scadenza(long ttlInattivitaMs, long ttlAssolutoMs) {
+            return Math.min(ultimoAccesso + ttlInattivitaMs, creata + ttlAssolutoMs);
+        }
+    }
+
+    /**
+     * Ruota temporale a slot fissi per le scadenze dei token
+     *
+     * Le scadenze oltre l'ampiezza della ruota finiscono nell'ultimo slot
+     * raggiungibile e vengono ripianificate quando lo slot viene visitato.
+     */
+    private static final class RuotaScadenze {
+
+        private final long granularitaMs;
+        private final List<Set<String>> slot;
+        private volatile long scattoCorrente;
+
+        RuotaScadenze(long granularitaMs, int numeroSlot, long adesso) {
+            this.granularitaMs = granularitaMs;
+            this.slot = new ArrayList<>(numeroSlot);
+            for (int i = 0; i < numeroSlot; i++) {
+                slot.add(ConcurrentHashMap.newKeySet());
+            }
+            this.scattoCorrente = adesso / granularitaMs;
+        }
+
+        void pianifica(String token, long scadenzaMs) {
+            long corrente = scattoCorrente;
+            long scatto = Math.max(scadenzaMs / granularitaMs, corrente + 1);
+            scatto = Math.min(scatto, corrente + slot.size() - 1);
+            slot.get((int) (scatto % slot.size())).add(token);
+        }
+
+        void avanza(long adesso, Consumer<String> controlla) {
+            long obiettivo = adesso / granularitaMs;
+            long visitati = 0;
+
+            while (scattoCorrente <= obiettivo && visitati < slot.size()) {
+                Set<String> scadenti = slot.get((int) (scattoCorrente % slot.size()));
+                scattoCorrente++;
+
+                // Svuota lo slot prima dei controlli: le ripianificazioni possono ricadere qui
+                List<String> daControllare = new ArrayList<>(scadenti.size());
+                Iterator<String> iteratore = scadenti.iterator();
+                while (iteratore.hasNext()) {
+                    daControllare.add(iteratore.next());
+                    iteratore.remove();
+                }
+                for (String token : daControllare) {
+                    controlla.accept(token);
+                }
+                visitati++;
+            }
+
+            // Ruota rimasta indietro di un giro completo: riallinea lo scatto
+            if (scattoCorrente <= obiettivo) {
+                scattoCorrente = obiettivo + 1;
+            }
+        }
     }
 }
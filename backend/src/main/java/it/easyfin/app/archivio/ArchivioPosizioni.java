@@ -0,0 +1,287 @@
+package it.easyfin.app.archivio;
+
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import it.easyfin.app.dominio.Denaro;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Posizioni e saldi di tutti gli utenti, per la rivalutazione di sistema
+ *
+ * Gli aggiornamenti arrivano dopo il commit degli ordini e modificano solo
+ * lo stato per utente. La rivalutazione lavora su un'istantanea colonnare
+ * (utente, ordinale del ticker, quantità, prezzo medio) compattata solo
+ * quando qualcosa è cambiato, così il calcolo di ogni tick scorre array
+ * primitivi contigui senza lock né mappe.
+ */
+@Component
+public class ArchivioPosizioni {
+
+    // Utenti per blocco di calcolo: sotto questa soglia il lavoro non viene più diviso
+    private static final int UTENTI_PER_BLOCCO = 2048;
+
+    private final Map<Long, Riga> righe = new HashMap<>();
+    private long modifiche;
+
+    private IstantaneaPosizioni compattata = IstantaneaPosizioni.VUOTA;
+    private long modificheCompattate;
+
+    /**
+     * Imposta il saldo contante di un utente, registrandolo se nuovo
+     */
+    public synchronized void applicaSaldo(long utenteId, long saldo) {
+        righe.computeIfAbsent(utenteId, id -> new Riga()).saldo = saldo;
+        modifiche++;
+    }
+
+    /**
+     * Imposta quantità e prezzo medio di una posizione (quantità zero = chiusa)
+     */
+    public synchronized void applicaPosizione(long utenteId, String ticker, int quantita, long prezzoMedio) {
+        Riga riga = righe.computeIfAbsent(utenteId, id -> new Riga());
+        if (quantita > 0) {
+            riga.posizioni.put(ticker, new long[]{quantita, prezzoMedio});
+        } else {
+            riga.posizioni.remove(ticker);
+        }
+        modifiche++;
+    }
+
+    /**
+     * Svuota l'archivio (prima di un caricamento completo)
+     */
+    public synchronized void svuota() {
+        righe.clear();
+        modifiche++;
+    }
+
+    /**
+     * Istantanea colonnare allineata agli ordinali del listino indicato
+     *
+     * Viene ricostruita solo se posizioni o saldi sono cambiati, oppure se
+     * il listino ha un universo diverso da quello della compattazione.
+     */
+    public synchronized IstantaneaPosizioni istantanea(Istantanea listino) {
+        if (modifiche == modificheCompattate && compattata.listino != null
+                && listino.stessoUniverso(compattata.listino)) {
+            return compattata;
+        }
+
+        int utenti = righe.size();
+        int posizioni = 0;
+        for (Riga riga : righe.values()) {
+            posizioni += riga.posizioni.size();
+        }
+
+        long[] utenteId = new long[utenti];
+        long[] saldi = new long[utenti];
+        int[] inizio = new int[utenti + 1];
+        int[] ordinali = new int[posizioni];
+        int[] quantita = new int[posizioni];
+        long[] prezziMedi = new long[posizioni];
+
+        int u = 0;
+        int p = 0;
+        for (Map.Entry<Long, Riga> voce : righe.entrySet()) {
+            Riga riga = voce.getValue();
+            utenteId[u] = voce.getKey();
+            saldi[u] = riga.saldo;
+            inizio[u] = p;
+            for (Map.Entry<String, long[]> posizione : riga.posizioni.entrySet()) {
+                ordinali[p] = listino.ordinale(posizione.getKey());
+                quantita[p] = (int) posizione.getValue()[0];
+                prezziMedi[p] = posizione.getValue()[1];
+                p++;
+            }
+            u++;
+        }
+        inizio[utenti] = p;
+
+        compattata = new IstantaneaPosizioni(listino, utenteId, saldi, inizio, ordinali, quantita, prezziMedi);
+        modificheCompattate = modifiche;
+        return compattata;
+    }
+
+    /**
+     * Saldo e posizioni correnti di un utente
+     */
+    private static final class Riga {
+
+        long saldo;
+        final Map<String, long[]> posizioni = new LinkedHashMap<>(4);
+    }
+
+    /**
+     * Istantanea immutabile in colonne: le posizioni dell'utente u sono
+     * quelle con indice in [inizio[u], inizio[u + 1])
+     */
+    public static final class IstantaneaPosizioni {
+
+        static final IstantaneaPosizioni VUOTA = new IstantaneaPosizioni(null, new long[0], new long[0],
+            new int[1], new int[0], new int[0], new long[0]);
+
+        private final Istantanea listino;
+        private final long[] utenteId;
+        private final long[] saldi;
+        private final int[] inizio;
+        private final int[] ordinali;
+        private final int[] quantita;
+        private final long[] prezziMedi;
+
+        private IstantaneaPosizioni(Istantanea listino, long[] utenteId, long[] saldi, int[] inizio,
+                                    int[] ordinali, int[] quantita, long[] prezziMedi) {
+            this.listino = listino;
+            this.utenteId = utenteId;
+            this.saldi = saldi;
+            this.inizio = inizio;
+            this.ordinali = ordinali;
+            this.quantita = quantita;
+            this.prezziMedi = prezziMedi;
+        }
+
+        public int numeroUtenti() {
+            return utenteId.length;
+        }
+
+        public int numeroPosizioni() {
+            return ordinali.length;
+        }
+
+        /**
+         * Ricalcola NAV e P&L non realizzato di tutti gli utenti ai prezzi
+         * indicati (allineati agli ordinali del listino dell'istantanea)
+         *
+         * Gli utenti sono divisi in blocchi contigui calcolati in parallelo
+         * sul pool; ogni blocco scrive solo la propria porzione dei risultati.
+         */
+        public Rivalutazione rivaluta(ForkJoinPool pool, long[] prezzi, long versioneListino) {
+            long[] nav = new long[utenteId.length];
+            long[] pnl = new long[utenteId.length];
+            long[] totali = pool.invoke(new Blocco(this, prezzi, nav, pnl, 0, utenteId.length));
+            return new Rivalutazione(versioneListino, utenteId, nav, pnl, totali[0], totali[1]);
+        }
+    }
+
+    /**
+     * Calcolo di un intervallo di utenti; restituisce i totali {NAV, P&L}
+     */
+    private static final class Blocco extends RecursiveTask<long[]> {
+
+        private final IstantaneaPosizioni posizioni;
+        private final long[] prezzi;
+        private final long[] nav;
+        private final long[] pnl;
+        private final int da;
+        private final int a;
+
+        Blocco(IstantaneaPosizioni posizioni, long[] prezzi, long[] nav, long[] pnl, int da, int a) {
+            this.posizioni = posizioni;
+            this.prezzi = prezzi;
+            this.nav = nav;
+            this.pnl = pnl;
+            this.da = da;
+            this.a = a;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (a - da > UTENTI_PER_BLOCCO) {
+                int mezzo = (da + a) >>> 1;
+                Blocco sinistra = new Blocco(posizioni, prezzi, nav, pnl, da, mezzo);
+                sinistra.fork();
+                long[] destra = new Blocco(posizioni, prezzi, nav, pnl, mezzo, a).compute();
+                long[] parziale = sinistra.join();
+                return new long[]{parziale[0] + destra[0], parziale[1] + destra[1]};
+            }
+
+            int[] inizio = posizioni.inizio;
+            int[] ordinali = posizioni.ordinali;
+            int[] quantita = posizioni.quantita;
+            long[] prezziMedi = posizioni.prezziMedi;
+            long navTotale = 0;
+            long pnlTotale = 0;
+            for (int u = da; u < a; u++) {
+                long valore = 0;
+                long costo = 0;
+                for (int p = inizio[u]; p < inizio[u + 1]; p++) {
+                    int ordinale = ordinali[p];
+                    // Strumento uscito dal listino: valutato al prezzo medio
+                    long prezzo = ordinale >= 0 ? prezzi[ordinale] : prezziMedi[p];
+                    valore += Denaro.controvalore(prezzo, quantita[p]);
+                    costo += Denaro.controvalore(prezziMedi[p], quantita[p]);
+                }
+                nav[u] = posizioni.saldi[u] + valore;
+                pnl[u] = valore - costo;
+                navTotale += nav[u];
+                pnlTotale += pnl[u];
+            }
+            return new long[]{navTotale, pnlTotale};
+        }
+    }
+
+    /**
+     * Risultato di una rivalutazione di sistema, allineato per indice utente
+     */
+    public static final class Rivalutazione {
+
+        public static final Rivalutazione VUOTA = new Rivalutazione(0, new long[0], new long[0], new long[0], 0, 0);
+
+        private final long versioneListino;
+        private final long[] utenteId;
+        private final long[] nav;
+        private final long[] pnl;
+        private final long navTotale;
+        private final long pnlTotale;
+
+        private Rivalutazione(long versioneListino, long[] utenteId, long[] nav, long[] pnl,
+                              long navTotale, long pnlTotale) {
+            this.versioneListino = versioneListino;
+            this.utenteId = utenteId;
+            this.nav = nav;
+            this.pnl = pnl;
+            this.navTotale = navTotale;
+            this.pnlTotale = pnlTotale;
+        }
+
+        public long getVersioneListino() {
+            return versioneListino;
+        }
+
+        public int numeroUtenti() {
+            return utenteId.length;
+        }
+
+        /**
+         * Vero se le due rivalutazioni vengono dalla stessa istantanea di
+         * posizioni: stessi utenti agli stessi indici
+         */
+        public boolean stessiUtenti(Rivalutazione altra) {
+            return utenteId == altra.utenteId;
+        }
+
+        public long utenteId(int indice) {
+            return utenteId[indice];
+        }
+
+        public long nav(int indice) {
+            return nav[indice];
+        }
+
+        public long pnlNonRealizzato(int indice) {
+            return pnl[indice];
+        }
+
+        public long getNavTotale() {
+            return navTotale;
+        }
+
+        public long getPnlTotale() {
+            return pnlTotale;
+        }
+    }
+}
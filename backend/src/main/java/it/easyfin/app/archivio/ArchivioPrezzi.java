@@ -0,0 +1,157 @@
+package it.easyfin.app.archivio;
+
+import it.easyfin.app.dominio.Strumento;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Listino prezzi in memoria
+ *
+ * Mantiene tutti gli strumenti in array primitivi indicizzati per ordinale
+ * del ticker. I lettori ottengono un'istantanea immutabile senza lock;
+ * ad ogni aggiornamento viene pubblicata una nuova istantanea con uno
+ * scambio atomico del riferimento.
+ */
+@Component
+public class ArchivioPrezzi {
+
+    private final AtomicReference<Istantanea> corrente = new AtomicReference<>(Istantanea.VUOTA);
+
+    /**
+     * Restituisce l'istantanea corrente del listino
+     */
+    public Istantanea istantanea() {
+        return corrente.get();
+    }
+
+    /**
+     * Sostituisce l'intero listino con gli strumenti indicati
+     */
+    public synchronized void carica(List<Strumento> strumenti) {
+        int n = strumenti.size();
+        String[] ticker = new String[n];
+        String[] nomi = new String[n];
+        long[] prezzi = new long[n];
+
+        for (int i = 0; i < n; i++) {
+            Strumento strumento = strumenti.get(i);
+            ticker[i] = strumento.getTicker();
+            nomi[i] = strumento.getNome();
+            prezzi[i] = strumento.getPrezzoCorrente();
+        }
+        carica(ticker, nomi, prezzi);
+    }
+
+    /**
+     * Sostituisce l'intero listino con gli array indicati, allineati per ordinale
+     *
+     * Gli array non vanno più modificati dal chiamante.
+     */
+    public synchronized void carica(String[] ticker, String[] nomi, long[] prezzi) {
+        int n = ticker.length;
+        Map<String, Integer> ordinali = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            ordinali.put(ticker[i], i);
+        }
+
+        Istantanea precedente = corrente.get();
+        corrente.set(new Istantanea(ticker, nomi, prezzi,
+            Collections.unmodifiableMap(ordinali), precedente.versione + 1));
+    }
+
+    /**
+     * Pubblica nuovi prezzi per l'universo corrente
+     *
+     * L'array deve essere allineato agli ordinali dell'istantanea indicata
+     * e non va più modificato dal chiamante dopo la pubblicazione.
+     *
+     * @return la nuova istantanea, oppure null se nel frattempo è stata
+     *         pubblicata un'altra istantanea e il chiamante deve ripartire
+     */
+    public synchronized Istantanea pubblica(Istantanea base, long[] nuoviPrezzi) {
+        Istantanea precedente = corrente.get();
+        if (precedente != base || nuoviPrezzi.length != base.prezzi.length) {
+            return null;
+        }
+
+        Istantanea nuova = new Istantanea(precedente.ticker, precedente.nomi, nuoviPrezzi,
+            precedente.ordinali, precedente.versione + 1);
+        corrente.set(nuova);
+        return nuova;
+    }
+
+    /**
+     * Istantanea immutabile del listino
+     */
+    public static final class Istantanea {
+
+        static final Istantanea VUOTA = new Istantanea(new String[0], new String[0], new long[0],
+            Collections.emptyMap(), 0);
+
+        private final String[] ticker;
+        private final String[] nomi;
+        private final long[] prezzi;
+        private final Map<String, Integer> ordinali;
+        private final long versione;
+
+        private Istantanea(String[] ticker, String[] nomi, long[] prezzi,
+                           Map<String, Integer> ordinali, long versione) {
+            this.ticker = ticker;
+            this.nomi = nomi;
+            this.prezzi = prezzi;
+            this.ordinali = ordinali;
+            this.versione = versione;
+        }
+
+        /**
+         * Ordinale del ticker, oppure -1 se lo strumento non esiste
+         */
+        public int ordinale(String ticker) {
+            Integer ordinale = ordinali.get(ticker);
+            return ordinale != null ? ordinale : -1;
+        }
+
+        public int dimensione() {
+            return ticker.length;
+        }
+
+        public String ticker(int ordinale) {
+            return ticker[ordinale];
+        }
+
+        public String nome(int ordinale) {
+            return nomi[ordinale];
+        }
+
+        /**
+         * Prezzo in centesimi
+         */
+        public long prezzo(int ordinale) {
+            return prezzi[ordinale];
+        }
+
+        /**
+         * Copia dei prezzi, da usare come base per la prossima pubblicazione
+         */
+        public long[] copiaPrezzi() {
+            return Arrays.copyOf(prezzi, prezzi.length);
+        }
+
+        public long versione() {
+            return versione;
+        }
+
+        /**
+         * Indica se due istantanee condividono lo stesso universo di ticker e ordinali
+         */
+        public boolean stessoUniverso(Istantanea altra) {
+            return ticker == altra.ticker;
+        }
+    }
+}
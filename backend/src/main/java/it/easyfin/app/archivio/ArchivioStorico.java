@@ -0,0 +1,349 @@
+package it.easyfin.app.archivio;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Storico dei prezzi per ticker
+ *
+ * Gli ultimi tick di ogni strumento restano in un anello di array primitivi
+ * a dimensione fissa; quando l'anello è pieno il tick più vecchio viene
+ * spostato in un segmento su file mappato in memoria (8 byte per tick:
+ * scarto in millisecondi dall'inizio del segmento e prezzo in centesimi).
+ * Le candele OHLC sono aggiornate a ogni tick, per ciascun intervallo,
+ * in anelli di candele anch'essi a dimensione fissa.
+ */
+@Component
+public class ArchivioStorico {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchivioStorico.class);
+
+    // Intestazione del segmento: magic, versione, inizio (ms), numero di tick
+    private static final int MAGIC = 0x45465354;
+    private static final int VERSIONE_SEGMENTO = 1;
+    private static final int POSIZIONE_INIZIO = 8;
+    private static final int POSIZIONE_CONTEGGIO = 16;
+    private static final int DIMENSIONE_INTESTAZIONE = 24;
+    private static final int DIMENSIONE_RECORD = 8;
+
+    /**
+     * Intervalli delle candele, allineati all'epoca UTC
+     */
+    public enum Intervallo {
+        M1("1m", 60_000L),
+        M5("5m", 300_000L),
+        M15("15m", 900_000L),
+        H1("1h", 3_600_000L),
+        D1("1d", 86_400_000L);
+
+        private final String codice;
+        private final long durataMs;
+
+        Intervallo(String codice, long durataMs) {
+            this.codice = codice;
+            this.durataMs = durataMs;
+        }
+
+        public String codice() {
+            return codice;
+        }
+
+        /**
+         * Intervallo con il codice indicato (es. "5m"), oppure null
+         */
+        public static Intervallo daCodice(String codice) {
+            for (Intervallo intervallo : values()) {
+                if (intervallo.codice.equals(codice)) {
+                    return intervallo;
+                }
+            }
+            return null;
+        }
+    }
+
+    @Value("${easyfin.storico.capacita-anello:4096}")
+    private int capacitaAnello;
+
+    @Value("${easyfin.storico.candele-per-intervallo:500}")
+    private int candelePerIntervallo;
+
+    @Value("${easyfin.storico.tick-per-segmento:65536}")
+    private int tickPerSegmento;
+
+    @Value("${easyfin.storico.cartella:dati/storico}")
+    private String percorsoCartella;
+
+    private final Map<String, Serie> serie = new ConcurrentHashMap<>();
+
+    private Path cartella;
+    private volatile boolean segmentiAttivi;
+
+    @PostConstruct
+    void prepara() {
+        try {
+            cartella = Paths.get(percorsoCartella);
+            Files.createDirectories(cartella);
+            segmentiAttivi = true;
+        } catch (IOException e) {
+            log.warn("Cartella dello storico non disponibile, i tick più vecchi verranno scartati", e);
+        }
+    }
+
+    @PreDestroy
+    void chiudi() {
+        for (Serie s : serie.values()) {
+            synchronized (s) {
+                s.chiudiSegmento();
+            }
+        }
+    }
+
+    /**
+     * Registra un tick del ticker all'istante indicato (ms dall'epoca)
+     */
+    public void registra(String ticker, long istante, long prezzo) {
+        Serie s = serie.computeIfAbsent(ticker, Serie::new);
+        synchronized (s) {
+            s.aggiungi(istante, prezzo);
+        }
+    }
+
+    /**
+     * Ultime candele del ticker, dalla più vecchia alla più recente
+     */
+    public List<Candela> candele(String ticker, Intervallo intervallo, int limite) {
+        Serie s = serie.get(ticker);
+        if (s == null) {
+            return Collections.emptyList();
+        }
+        synchronized (s) {
+            return s.candele[intervallo.ordinal()].ultime(limite);
+        }
+    }
+
+    /**
+     * Numero massimo di candele conservate per intervallo
+     */
+    public int candelePerIntervallo() {
+        return candelePerIntervallo;
+    }
+
+    /**
+     * Candela OHLC immutabile
+     */
+    public static final class Candela {
+
+        private final long inizio;
+        private final long apertura;
+        private final long massimo;
+        private final long minimo;
+        private final long chiusura;
+        private final int numeroTick;
+
+        Candela(long inizio, long apertura, long massimo, long minimo, long chiusura, int numeroTick) {
+            this.inizio = inizio;
+            this.apertura = apertura;
+            this.massimo = massimo;
+            this.minimo = minimo;
+            this.chiusura = chiusura;
+            this.numeroTick = numeroTick;
+        }
+
+        public long getInizio() {
+            return inizio;
+        }
+
+        public long getApertura() {
+            return apertura;
+        }
+
+        public long getMassimo() {
+            return massimo;
+        }
+
+        public long getMinimo() {
+            return minimo;
+        }
+
+        public long getChiusura() {
+            return chiusura;
+        }
+
+        public int getNumeroTick() {
+            return numeroTick;
+        }
+    }
+
+    /**
+     * Serie di un ticker: anello dei tick recenti, segmento attivo e candele
+     *
+     * Va usata tenendo il lock sull'istanza.
+     */
+    private final class Serie {
+
+        final String ticker;
+        final long[] istanti = new long[capacitaAnello];
+        final long[] prezzi = new long[capacitaAnello];
+        long scritti;
+
+        final AnelloCandele[] candele;
+
+        MappedByteBuffer segmento;
+        long inizioSegmento;
+        int tickSegmento;
+
+        Serie(String ticker) {
+            this.ticker = ticker;
+            Intervallo[] intervalli = Intervallo.values();
+            this.candele = new AnelloCandele[intervalli.length];
+            for (Intervallo intervallo : intervalli) {
+                candele[intervallo.ordinal()] = new AnelloCandele(intervallo.durataMs, candelePerIntervallo);
+            }
+        }
+
+        void aggiungi(long istante, long prezzo) {
+            int indice = (int) (scritti % capacitaAnello);
+            if (scritti >= capacitaAnello) {
+                archivia(istanti[indice], prezzi[indice]);
+            }
+            istanti[indice] = istante;
+            prezzi[indice] = prezzo;
+            scritti++;
+
+            for (AnelloCandele anello : candele) {
+                anello.aggiorna(istante, prezzo);
+            }
+        }
+
+        /**
+         * Sposta un tick uscito dall'anello nel segmento su file
+         */
+        void archivia(long istante, long prezzo) {
+            if (!segmentiAttivi) {
+                return;
+            }
+            long scarto = istante - inizioSegmento;
+            if (segmento == null || tickSegmento == tickPerSegmento || scarto < 0 || scarto > Integer.MAX_VALUE) {
+                chiudiSegmento();
+                if (!apriSegmento(istante)) {
+                    return;
+                }
+                scarto = 0;
+            }
+
+            int posizione = DIMENSIONE_INTESTAZIONE + tickSegmento * DIMENSIONE_RECORD;
+            segmento.putInt(posizione, (int) scarto);
+            segmento.putInt(posizione + 4, (int) prezzo);
+            tickSegmento++;
+            segmento.putInt(POSIZIONE_CONTEGGIO, tickSegmento);
+        }
+
+        boolean apriSegmento(long inizio) {
+            Path file = cartella.resolve(ticker + "-" + inizio + ".seg");
+            long dimensione = DIMENSIONE_INTESTAZIONE + (long) tickPerSegmento * DIMENSIONE_RECORD;
+            try (FileChannel canale = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                // La mappatura resta valida anche dopo la chiusura del canale
+                segmento = canale.map(FileChannel.MapMode.READ_WRITE, 0, dimensione);
+            } catch (IOException e) {
+                log.warn("Impossibile creare il segmento {}, archiviazione su file disattivata", file, e);
+                segmentiAttivi = false;
+                segmento = null;
+                return false;
+            }
+
+            segmento.putInt(0, MAGIC);
+            segmento.putInt(4, VERSIONE_SEGMENTO);
+            segmento.putLong(POSIZIONE_INIZIO, inizio);
+            segmento.putInt(POSIZIONE_CONTEGGIO, 0);
+            inizioSegmento = inizio;
+            tickSegmento = 0;
+            return true;
+        }
+
+        void chiudiSegmento() {
+            if (segmento != null) {
+                segmento.force();
+                segmento = null;
+            }
+        }
+    }
+
+    /**
+     * Anello di candele di un intervallo, aggiornato in modo incrementale
+     */
+    private static final class AnelloCandele {
+
+        final long durataMs;
+        final int capacita;
+        final long[] inizio;
+        final long[] apertura;
+        final long[] massimo;
+        final long[] minimo;
+        final long[] chiusura;
+        final int[] numeroTick;
+        long create;
+
+        AnelloCandele(long durataMs, int capacita) {
+            this.durataMs = durataMs;
+            this.capacita = capacita;
+            this.inizio = new long[capacita];
+            this.apertura = new long[capacita];
+            this.massimo = new long[capacita];
+            this.minimo = new long[capacita];
+            this.chiusura = new long[capacita];
+            this.numeroTick = new int[capacita];
+        }
+
+        void aggiorna(long istante, long prezzo) {
+            long avvio = istante - Math.floorMod(istante, durataMs);
+            if (create > 0) {
+                int ultima = (int) ((create - 1) % capacita);
+                // Un orologio che torna indietro non apre candele nel passato
+                if (avvio <= inizio[ultima]) {
+                    massimo[ultima] = Math.max(massimo[ultima], prezzo);
+                    minimo[ultima] = Math.min(minimo[ultima], prezzo);
+                    chiusura[ultima] = prezzo;
+                    numeroTick[ultima]++;
+                    return;
+                }
+            }
+
+            int nuova = (int) (create % capacita);
+            inizio[nuova] = avvio;
+            apertura[nuova] = prezzo;
+            massimo[nuova] = prezzo;
+            minimo[nuova] = prezzo;
+            chiusura[nuova] = prezzo;
+            numeroTick[nuova] = 1;
+            create++;
+        }
+
+        List<Candela> ultime(int limite) {
+            int numero = (int) Math.min(limite, Math.min(create, capacita));
+            List<Candela> risultato = new ArrayList<>(numero);
+            for (long i = create - numero; i < create; i++) {
+                int c = (int) (i % capacita);
+                risultato.add(new Candela(inizio[c], apertura[c], massimo[c], minimo[c], chiusura[c], numeroTick[c]));
+            }
+            return risultato;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package it.easyfin.app.archivio;
+
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import it.easyfin.app.dominio.Denaro;
+import it.easyfin.app.dominio.Posizione;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache in memoria delle valutazioni di portafoglio per utente
+ *
+ * Per ogni utente mantiene saldo, valore di mercato e costo delle posizioni
+ * come aggregati correnti. Un ordine aggiorna solo la posizione toccata e
+ * un tick di prezzo solo gli utenti che detengono quel ticker, entrambi in
+ * tempo costante per posizione. Le letture del portafoglio diventano
+ * letture in memoria. Gli aggregati sono in centesimi: gli aggiornamenti
+ * incrementali restano esatti senza accumulare errori di arrotondamento.
+ */
+@Component
+public class ArchivioValutazioni {
+
+    @Autowired
+    private ArchivioPrezzi archivioPrezzi;
+
+    private final Map<Long, Valutazione> perUtente = new ConcurrentHashMap<>();
+
+    // Indice ticker -> valutazioni degli utenti che lo detengono
+    private final Map<String, Set<Valutazione>> detentori = new ConcurrentHashMap<>();
+
+    /**
+     * Valutazione in cache dell'utente, oppure null se non ancora caricata
+     */
+    public Valutazione trova(long utenteId) {
+        return perUtente.get(utenteId);
+    }
+
+    /**
+     * Costruisce e registra la valutazione di un utente dalle posizioni persistite
+     *
+     * La valutazione viene pubblicata solo quando è completa; se un altro
+     * thread l'ha già registrata restituisce quella esistente.
+     */
+    public Valutazione carica(long utenteId, long saldo, List<Posizione> posizioni) {
+        Istantanea listino = archivioPrezzi.istantanea();
+        Valutazione valutazione = new Valutazione(utenteId, saldo);
+
+        for (Posizione posizione : posizioni) {
+            String ticker = posizione.getStrumento().getTicker();
+            int ordinale = listino.ordinale(ticker);
+            long prezzoCorrente = ordinale >= 0 ? listino.prezzo(ordinale) : posizione.getPrezzoMedio();
+            valutazione.impostaPosizione(ticker, posizione.getQuantita(), posizione.getPrezzoMedio(),
+                prezzoCorrente, listino.versione());
+        }
+
+        Valutazione esistente = perUtente.putIfAbsent(utenteId, valutazione);
+        if (esistente != null) {
+            return esistente;
+        }
+
+        for (String ticker : valutazione.posizioni.keySet()) {
+            detentori.computeIfAbsent(ticker, t -> ConcurrentHashMap.newKeySet()).add(valutazione);
+        }
+
+        // Recupera eventuali tick pubblicati prima della registrazione come detentore
+        Istantanea attuale = archivioPrezzi.istantanea();
+        synchronized (valutazione) {
+            for (String ticker : valutazione.posizioni.keySet()) {
+                int ordinale = attuale.ordinale(ticker);
+                if (ordinale >= 0) {
+                    valutazione.impostaPrezzo(ticker, attuale.prezzo(ordinale), attuale.versione());
+                }
+            }
+        }
+
+        return valutazione;
+    }
+
+    /**
+     * Rimuove la valutazione di un utente (es. dopo un rollback)
+     */
+    public void rimuovi(long utenteId) {
+        Valutazione valutazione = perUtente.remove(utenteId);
+        if (valutazione == null) {
+            return;
+        }
+        synchronized (valutazione) {
+            for (String ticker : valutazione.posizioni.keySet()) {
+                rimuoviDetentore(ticker, valutazione);
+            }
+        }
+    }
+
+    /**
+     * Imposta quantità e prezzo medio di una posizione dell'utente
+     *
+     * Il prezzo corrente viene letto dal listino dopo la registrazione come
+     * detentore, così nessun tick successivo va perso. Una quantità pari a
+     * zero rimuove la posizione.
+     */
+    public void applicaPosizione(Valutazione valutazione, String ticker, int quantita, long prezzoMedio) {
+        if (quantita > 0) {
+            detentori.computeIfAbsent(ticker, t -> ConcurrentHashMap.newKeySet()).add(valutazione);
+        } else {
+            rimuoviDetentore(ticker, valutazione);
+        }
+
+        Istantanea listino = archivioPrezzi.istantanea();
+        int ordinale = listino.ordinale(ticker);
+        long prezzoCorrente = ordinale >= 0 ? listino.prezzo(ordinale) : prezzoMedio;
+
+        synchronized (valutazione) {
+            valutazione.impostaPosizione(ticker, quantita, prezzoMedio, prezzoCorrente, listino.versione());
+        }
+    }
+
+    /**
+     * Aggiorna il saldo contante in cache dell'utente
+     */
+    public void applicaSaldo(Valutazione valutazione, long saldoContante) {
+        synchronized (valutazione) {
+            valutazione.saldoContante = saldoContante;
+        }
+    }
+
+    /**
+     * Propaga un nuovo listino alle valutazioni degli utenti interessati
+     *
+     * Visita solo i ticker il cui prezzo è cambiato e, per ciascuno,
+     * solo gli utenti che lo detengono.
+     */
+    public void applicaListino(Istantanea precedente, Istantanea nuovo) {
+        // Con un universo diverso gli ordinali non corrispondono: si visitano tutti i ticker
+        boolean allineati = nuovo.stessoUniverso(precedente);
+
+        for (int i = 0; i < nuovo.dimensione(); i++) {
+            long prezzo = nuovo.prezzo(i);
+            if (allineati && precedente.prezzo(i) == prezzo) {
+                continue;
+            }
+
+            Set<Valutazione> interessati = detentori.get(nuovo.ticker(i));
+            if (interessati == null) {
+                continue;
+            }
+            for (Valutazione valutazione : interessati) {
+                synchronized (valutazione) {
+                    valutazione.impostaPrezzo(nuovo.ticker(i), prezzo, nuovo.versione());
+                }
+            }
+        }
+    }
+
+    /**
+     * Numero di utenti con valutazione in cache
+     */
+    public int contaValutazioni() {
+        return perUtente.size();
+    }
+
+    /**
+     * Valutazioni di tutti gli utenti in cache
+     */
+    public Collection<Valutazione> tutte() {
+        return Collections.unmodifiableCollection(perUtente.values());
+    }
+
+    private void rimuoviDetentore(String ticker, Valutazione valutazione) {
+        Set<Valutazione> interessati = detentori.get(ticker);
+        if (interessati != null) {
+            interessati.remove(valutazione);
+        }
+    }
+
+    /**
+     * Valutazione corrente del portafoglio di un utente
+     *
+     * Gli accessi vanno sincronizzati sull'istanza stessa.
+     */
+    public static final class Valutazione {
+
+        private final long utenteId;
+        private long saldoContante;
+        private long valoreStrumenti;
+        private long costoStrumenti;
+        private final Map<String, Voce> posizioni = new LinkedHashMap<>();
+
+        private Valutazione(long utenteId, long saldoContante) {
+            this.utenteId = utenteId;
+            this.saldoContante = saldoContante;
+        }
+
+        public long getUtenteId() {
+            return utenteId;
+        }
+
+        public long getSaldoContante() {
+            return saldoContante;
+        }
+
+        public long getValoreStrumenti() {
+            return valoreStrumenti;
+        }
+
+        public long getPnlNonRealizzato() {
+            return valoreStrumenti - costoStrumenti;
+        }
+
+        public long getNav() {
+            return valoreStrumenti + saldoContante;
+        }
+
+        public Map<String, Voce> getPosizioni() {
+            return Collections.unmodifiableMap(posizioni);
+        }
+
+        private void impostaPosizione(String ticker, int quantita, long prezzoMedio,
+                                      long prezzoCorrente, long versioneListino) {
+            Voce voce = posizioni.get(ticker);
+            if (voce != null) {
+                valoreStrumenti -= Denaro.controvalore(voce.prezzoCorrente, voce.quantita);
+                costoStrumenti -= Denaro.controvalore(voce.prezzoMedio, voce.quantita);
+            }
+
+            if (quantita <= 0) {
+                posizioni.remove(ticker);
+                return;
+            }
+
+            if (voce == null) {
+                voce = new Voce();
+                posizioni.put(ticker, voce);
+            }
+            voce.quantita = quantita;
+            voce.prezzoMedio = prezzoMedio;
+            if (versioneListino >= voce.versionePrezzo) {
+                voce.prezzoCorrente = prezzoCorrente;
+                voce.versionePrezzo = versioneListino;
+            }
+
+            valoreStrumenti += Denaro.controvalore(voce.prezzoCorrente, voce.quantita);
+            costoStrumenti += Denaro.controvalore(voce.prezzoMedio, voce.quantita);
+        }
+
+        private void impostaPrezzo(String ticker, long prezzo, long versioneListino) {
+            Voce voce = posizioni.get(ticker);
+            if (voce == null || versioneListino < voce.versionePrezzo) {
+                return;
+            }
+            valoreStrumenti += Denaro.pnl(prezzo, voce.prezzoCorrente, voce.quantita);
+            voce.prezzoCorrente = prezzo;
+            voce.versionePrezzo = versioneListino;
+        }
+    }
+
+    /**
+     * Posizione in cache: quantità, prezzo medio e ultimo prezzo applicato
+     */
+    public static final class Voce {
+
+        private int quantita;
+        private long prezzoMedio;
+        private long prezzoCorrente;
+        private long versionePrezzo;
+
+        public int getQuantita() {
+            return quantita;
+        }
+
+        public long getPrezzoMedio() {
+            return prezzoMedio;
+        }
+
+        public long getPrezzoCorrente() {
+            return prezzoCorrente;
+        }
+
+        public long getValoreMercato() {
+            return Denaro.controvalore(prezzoCorrente, quantita);
+        }
+
+        public long getPnlNonRealizzato() {
+            return Denaro.pnl(prezzoCorrente, prezzoMedio, quantita);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package it.easyfin.app.archivio;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Classifica degli utenti per NAV, mantenuta in modo incrementale
+ *
+ * Treap con statistica d'ordine su array primitivi: ogni nodo conosce la
+ * dimensione del proprio sottoalbero, così aggiornare il NAV di un utente,
+ * trovarne la posizione e leggere i primi K costano O(log n) (più K) senza
+ * mai ordinare l'intera popolazione. L'ordine è per NAV decrescente, a
+ * parità di NAV per id utente crescente. L'indice 0 è il nodo vuoto.
+ */
+@Component
+public class Classifica {
+
+    private long[] nav = new long[1024];
+    private long[] utente = new long[1024];
+    private int[] priorita = new int[1024];
+    private int[] sinistro = new int[1024];
+    private int[] destro = new int[1024];
+    private int[] dimensione = new int[1024];
+
+    private final Map<Long, Integer> nodi = new HashMap<>();
+    private int radice;
+    private int prossimo = 1;
+    private int liberi;
+
+    // Risultati di dividi()
+    private int divisoSinistro;
+    private int divisoDestro;
+
+    /**
+     * Imposta il NAV di un utente, inserendolo se non è ancora in classifica
+     */
+    public synchronized void aggiorna(long utenteId, long navUtente) {
+        Integer esistente = nodi.get(utenteId);
+        if (esistente != null) {
+            if (nav[esistente] == navUtente) {
+                return;
+            }
+            radice = rimuovi(radice, esistente);
+            rilascia(esistente);
+        }
+        int nodo = alloca(utenteId, navUtente);
+        nodi.put(utenteId, nodo);
+        radice = inserisci(radice, nodo);
+    }
+
+    /**
+     * Imposta il NAV dei primi n utenti indicati, con un solo lock
+     */
+    public synchronized void aggiorna(long[] utenti, long[] navUtenti, int numero) {
+        for (int i = 0; i < numero; i++) {
+            aggiorna(utenti[i], navUtenti[i]);
+        }
+    }
+
+    /**
+     * Toglie un utente dalla classifica
+     */
+    public synchronized void rimuovi(long utenteId) {
+        Integer nodo = nodi.remove(utenteId);
+        if (nodo != null) {
+            radice = rimuovi(radice, nodo);
+            rilascia(nodo);
+        }
+    }
+
+    /**
+     * Posizione dell'utente (1 = primo), oppure 0 se non è in classifica
+     */
+    public synchronized int posizione(long utenteId) {
+        Integer nodo = nodi.get(utenteId);
+        if (nodo == null) {
+            return 0;
+        }
+        int precedenti = 0;
+        int t = radice;
+        while (t != 0) {
+            if (t == nodo) {
+                return precedenti + dimensione[sinistro[t]] + 1;
+            }
+            if (precede(nodo, t)) {
+                t = sinistro[t];
+            } else {
+                precedenti += dimensione[sinistro[t]] + 1;
+                t = destro[t];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * NAV in classifica dell'utente, oppure null se assente
+     */
+    public synchronized Long nav(long utenteId) {
+        Integer nodo = nodi.get(utenteId);
+        return nodo != null ? nav[nodo] : null;
+    }
+
+    /**
+     * Primi K utenti in ordine di classifica
+     */
+    public synchronized Primi primi(int k) {
+        int numero = Math.min(k, dimensione[radice]);
+        long[] utenti = new long[numero];
+        long[] navUtenti = new long[numero];
+
+        // Visita in ordine iterativa, interrotta dopo K nodi
+        int[] pila = new int[64];
+        int cima = 0;
+        int t = radice;
+        int trovati = 0;
+        while (trovati < numero && (t != 0 || cima > 0)) {
+            while (t != 0) {
+                if (cima == pila.length) {
+                    pila = Arrays.copyOf(pila, cima * 2);
+                }
+                pila[cima++] = t;
+                t = sinistro[t];
+            }
+            t = pila[--cima];
+            utenti[trovati] = utente[t];
+            navUtenti[trovati] = nav[t];
+            trovati++;
+            t = destro[t];
+        }
+        return new Primi(utenti, navUtenti);
+    }
+
+    /**
+     * Numero di utenti in classifica
+     */
+    public synchronized int dimensione() {
+        return dimensione[radice];
+    }
+
+    private boolean precede(int a, int b) {
+        return nav[a] > nav[b] || (nav[a] == nav[b] && utente[a] < utente[b]);
+    }
+
+    private void ricalcola(int t) {
+        dimensione[t] = dimensione[sinistro[t]] + dimensione[destro[t]] + 1;
+    }
+
+    private int inserisci(int t, int nodo) {
+        if (t == 0) {
+            return nodo;
+        }
+        if (priorita[nodo] > priorita[t]) {
+            dividi(t, nodo);
+            sinistro[nodo] = divisoSinistro;
+            destro[nodo] = divisoDestro;
+            ricalcola(nodo);
+            return nodo;
+        }
+        if (precede(nodo, t)) {
+            sinistro[t] = inserisci(sinistro[t], nodo);
+        } else {
+            destro[t] = inserisci(destro[t], nodo);
+        }
+        ricalcola(t);
+        return t;
+    }
+
+    /**
+     * Divide il sottoalbero in nodi che precedono il nodo indicato e nodi che lo seguono
+     */
+    private void dividi(int t, int nodo) {
+        if (t == 0) {
+            divisoSinistro = 0;
+            divisoDestro = 0;
+            return;
+        }
+        if (precede(t, nodo)) {
+            dividi(destro[t], nodo);
+            destro[t] = divisoSinistro;
+            ricalcola(t);
+            divisoSinistro = t;
+        } else {
+            dividi(sinistro[t], nodo);
+            sinistro[t] = divisoDestro;
+            ricalcola(t);
+            divisoDestro = t;
+        }
+    }
+
+    private int rimuovi(int t, int nodo) {
+        if (t == nodo) {
+            return unisci(sinistro[t], destro[t]);
+        }
+        if (precede(nodo, t)) {
+            sinistro[t] = rimuovi(sinistro[t], nodo);
+        } else {
+            destro[t] = rimuovi(destro[t], nodo);
+        }
+        ricalcola(t);
+        return t;
+    }
+
+    private int unisci(int a, int b) {
+        if (a == 0) {
+            return b;
+        }
+        if (b == 0) {
+            return a;
+        }
+        if (priorita[a] > priorita[b]) {
+            destro[a] = unisci(destro[a], b);
+            ricalcola(a);
+            return a;
+        }
+        sinistro[b] = unisci(a, sinistro[b]);
+        ricalcola(b);
+        return b;
+    }
+
+    private int alloca(long utenteId, long navUtente) {
+        int nodo;
+        if (liberi != 0) {
+            nodo = liberi;
+            liberi = sinistro[nodo];
+        } else {
+            if (prossimo == nav.length) {
+                int capacita = nav.length * 2;
+                nav = Arrays.copyOf(nav, capacita);
+                utente = Arrays.copyOf(utente, capacita);
+                priorita = Arrays.copyOf(priorita, capacita);
+                sinistro = Arrays.copyOf(sinistro, capacita);
+                destro = Arrays.copyOf(destro, capacita);
+                dimensione = Arrays.copyOf(dimensione, capacita);
+            }
+            nodo = prossimo++;
+        }
+        nav[nodo] = navUtente;
+        utente[nodo] = utenteId;
+        priorita[nodo] = ThreadLocalRandom.current().nextInt();
+        sinistro[nodo] = 0;
+        destro[nodo] = 0;
+        dimensione[nodo] = 1;
+        return nodo;
+    }
+
+    // I nodi liberi sono concatenati tramite sinistro
+    private void rilascia(int nodo) {
+        sinistro[nodo] = liberi;
+        destro[nodo] = 0;
+        dimensione[nodo] = 0;
+        liberi = nodo;
+    }
+
+    /**
+     * Primi K della classifica: id utente e NAV in ordine
+     */
+    public static final class Primi {
+
+        private final long[] utenti;
+        private final long[] nav;
+
+        private Primi(long[] utenti, long[] nav) {
+            this.utenti = utenti;
+            this.nav = nav;
+        }
+
+        public int numero() {
+            return utenti.length;
+        }
+
+        public long utenteId(int indice) {
+            return utenti[indice];
+        }
+
+        public long nav(int indice) {
+            return nav[indice];
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package it.easyfin.app.archivio;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Giornale degli ordini in sola aggiunta su segmenti mappati in memoria
+ *
+ * Ogni voce è scritta come [lunghezza][crc32][tipo][dati]; una lunghezza
+ * zero indica la fine del giornale, -1 la fine del segmento. Un thread
+ * dedicato esegue il force dei segmenti: con PER_ORDINE chi scrive attende
+ * il force che copre le sue voci (più transazioni condividono lo stesso
+ * force), con BATCH il force avviene a intervalli senza attese, con ASYNC
+ * la scrittura su disco è lasciata al sistema operativo.
+ */
+@Component
+public class GiornaleOrdini {
+
+    private static final Logger log = LoggerFactory.getLogger(GiornaleOrdini.class);
+
+    private static final int INTESTAZIONE_VOCE = 9;
+    private static final int FINE_SEGMENTO = -1;
+    private static final String PREFISSO = "giornale-";
+    private static final String ESTENSIONE = ".log";
+
+    /**
+     * Livelli di durabilità delle scritture
+     */
+    public enum Durabilita {
+        PER_ORDINE, BATCH, ASYNC
+    }
+
+    @Value("${easyfin.giornale.abilitato:true}")
+    private boolean abilitato;
+
+    @Value("${easyfin.giornale.cartella:dati/giornale}")
+    private String percorsoCartella;
+
+    @Value("${easyfin.giornale.dimensione-segmento:67108864}")
+    private int dimensioneSegmento;
+
+    @Value("${easyfin.giornale.durabilita:PER_ORDINE}")
+    private Durabilita durabilita;
+
+    @Value("${easyfin.giornale.intervallo-batch-ms:10}")
+    private long intervalloBatchMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition daSincronizzare = lock.newCondition();
+    private final Condition sincronizzato = lock.newCondition();
+    private final CRC32 crc = new CRC32();
+
+    private Path cartella;
+    private MappedByteBuffer segmento;
+    private int numeroSegmento;
+
+    // Posizioni logiche in byte dall'inizio del primo segmento aperto in questa esecuzione
+    private long inizioSegmento;
+    private long scritti;
+    private long sincronizzati;
+
+    private volatile boolean attivo;
+    private Thread sincronizzatore;
+
+    @PostConstruct
+    void apri() throws IOException {
+        if (!abilitato) {
+            return;
+        }
+        cartella = Paths.get(percorsoCartella);
+        Files.createDirectories(cartella);
+
+        List<Path> segmenti = segmenti();
+        if (segmenti.isEmpty()) {
+            apriSegmento(1);
+        } else {
+            Path ultimo = segmenti.get(segmenti.size() - 1);
+            apriSegmento(numeroDi(ultimo));
+            int coda = scorri(segmento, null);
+            scritti = coda;
+            sincronizzati = coda;
+        }
+
+        attivo = true;
+        if (durabilita != Durabilita.ASYNC) {
+            sincronizzatore = new Thread(this::sincronizza, "giornale-sync");
+            sincronizzatore.setDaemon(true);
+            sincronizzatore.start();
+        }
+    }
+
+    @PreDestroy
+    void chiudi() throws InterruptedException {
+        if (!attivo) {
+            return;
+        }
+        lock.lock();
+        try {
+            attivo = false;
+            daSincronizzare.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (sincronizzatore != null) {
+            sincronizzatore.join(1000);
+        }
+        segmento.force();
+    }
+
+    public boolean isAbilitato() {
+        return abilitato;
+    }
+
+    /**
+     * Rilegge tutte le voci del giornale, in ordine di scrittura
+     *
+     * Va chiamato all'avvio, prima delle nuove scritture. La lettura si
+     * ferma alla prima voce incompleta o con checksum errato.
+     */
+    public int ripeti(Consumer<VoceGiornale> consumatore) throws IOException {
+        if (!abilitato) {
+            return 0;
+        }
+        int[] lette = new int[1];
+        for (Path file : segmenti()) {
+            try (FileChannel canale = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = canale.map(FileChannel.MapMode.READ_ONLY, 0, canale.size());
+                scorri(buffer, voce -> {
+                    consumatore.accept(voce);
+                    lette[0]++;
+                });
+            }
+        }
+        return lette[0];
+    }
+
+    /**
+     * Aggiunge le voci di una transazione confermata
+     *
+     * Le voci sono scritte una di seguito all'altra; con durabilità
+     * PER_ORDINE il metodo ritorna dopo il force che le comprende.
+     */
+    public void registra(List<VoceGiornale> voci) {
+        if (!abilitato || voci.isEmpty()) {
+            return;
+        }
+
+        long fine;
+        lock.lock();
+        try {
+            for (VoceGiornale voce : voci) {
+                scriviVoce(voce);
+            }
+            fine = scritti;
+            daSincronizzare.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        if (durabilita == Durabilita.PER_ORDINE) {
+            attendiSincronizzazione(fine);
+        }
+    }
+
+    private void scriviVoce(VoceGiornale voce) {
+        byte[] dati = voce.dati();
+        int dimensione = INTESTAZIONE_VOCE + dati.length;
+        int posizione = (int) (scritti - inizioSegmento);
+
+        // Lascia sempre spazio per il marcatore di fine segmento
+        if (posizione + dimensione + 4 > dimensioneSegmento) {
+            ruota(posizione);
+            posizione = 0;
+        }
+
+        crc.reset();
+        crc.update(voce.getTipo().ordinal());
+        crc.update(dati);
+
+        // La lunghezza è scritta per ultima: una voce a metà resta invisibile
+        segmento.putInt(posizione + 4, (int) crc.getValue());
+        segmento.put(posizione + 8, (byte) voce.getTipo().ordinal());
+        segmento.put(posizione + INTESTAZIONE_VOCE, dati);
+        segmento.putInt(posizione, dati.length);
+        scritti += dimensione;
+    }
+
+    /**
+     * Chiude il segmento corrente con il marcatore e apre il successivo
+     */
+    private void ruota(int posizione) {
+        segmento.putInt(posizione, FINE_SEGMENTO);
+        segmento.force();
+        scritti = inizioSegmento + dimensioneSegmento;
+        sincronizzati = scritti;
+        sincronizzato.signalAll();
+        try {
+            apriSegmento(numeroSegmento + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile aprire un nuovo segmento del giornale", e);
+        }
+        inizioSegmento = scritti;
+    }
+
+    private void apriSegmento(int numero) throws IOException {
+        Path file = cartella.resolve(String.format("%s%06d%s", PREFISSO, numero, ESTENSIONE));
+        try (FileChannel canale = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segmento = canale.map(FileChannel.MapMode.READ_WRITE, 0, dimensioneSegmento);
+        }
+        numeroSegmento = numero;
+    }
+
+    /**
+     * Scorre le voci valide di un segmento e restituisce la posizione di coda
+     */
+    private int scorri(MappedByteBuffer buffer, Consumer<VoceGiornale> consumatore) {
+        int posizione = 0;
+        CRC32 verifica = new CRC32();
+        while (posizione + INTESTAZIONE_VOCE <= buffer.capacity()) {
+            int lunghezza = buffer.getInt(posizione);
+            if (lunghezza <= 0 || posizione + INTESTAZIONE_VOCE + lunghezza > buffer.capacity()) {
+                break;
+            }
+
+            int tipo = buffer.get(posizione + 8);
+            byte[] dati = new byte[lunghezza];
+            buffer.get(posizione + INTESTAZIONE_VOCE, dati);
+            verifica.reset();
+            verifica.update(tipo);
+            verifica.update(dati);
+            if ((int) verifica.getValue() != buffer.getInt(posizione + 4)
+                    || tipo < 0 || tipo >= VoceGiornale.Tipo.values().length) {
+                log.warn("Voce del giornale non valida alla posizione {}: lettura interrotta", posizione);
+                break;
+            }
+
+            if (consumatore != null) {
+                consumatore.accept(VoceGiornale.leggi(VoceGiornale.Tipo.values()[tipo], dati));
+            }
+            posizione += INTESTAZIONE_VOCE + lunghezza;
+        }
+        return posizione;
+    }
+
+    /**
+     * Ciclo del thread di sincronizzazione
+     */
+    private void sincronizza() {
+        while (true) {
+            MappedByteBuffer buffer;
+            long obiettivo;
+            int da;
+            int a;
+
+            lock.lock();
+            try {
+                while (attivo && scritti == sincronizzati) {
+                    daSincronizzare.awaitUninterruptibly();
+                }
+                if (!attivo) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (durabilita == Durabilita.BATCH) {
+                // Raccoglie le scritture dell'intervallo in un solo force
+                try {
+                    TimeUnit.MILLISECONDS.sleep(intervalloBatchMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            lock.lock();
+            try {
+                buffer = segmento;
+                obiettivo = scritti;
+                da = (int) Math.max(0, sincronizzati - inizioSegmento);
+                a = (int) (obiettivo - inizioSegmento);
+            } finally {
+                lock.unlock();
+            }
+
+            if (a > da) {
+                buffer.force(da, a - da);
+            }
+
+            lock.lock();
+            try {
+                sincronizzati = Math.max(sincronizzati, obiettivo);
+                sincronizzato.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void attendiSincronizzazione(long fine) {
+        lock.lock();
+        try {
+            while (sincronizzati < fine && attivo) {
+                sincronizzato.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Path> segmenti() throws IOException {
+        try (Stream<Path> file = Files.list(cartella)) {
+            List<Path> segmenti = new ArrayList<>();
+            file.filter(p -> {
+                    String nome = p.getFileName().toString();
+                    return nome.startsWith(PREFISSO) && nome.endsWith(ESTENSIONE);
+                })
+                .sorted()
+                .forEach(segmenti::add);
+            return segmenti;
+        }
+    }
+
+    private static int numeroDi(Path segmento) {
+        String nome = segmento.getFileName().toString();
+        return Integer.parseInt(nome.substring(PREFISSO.length(), nome.length() - ESTENSIONE.length()));
+    }
+}
@@ -0,0 +1,306 @@
+package it.easyfin.app.archivio;
+
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Indice di ricerca degli strumenti per ticker e parole del nome
+ *
+ * Ticker e parole sono piegati (minuscole, senza accenti) e tenuti in
+ * mappe ordinate: la ricerca per prefisso è un intervallo della mappa,
+ * letto solo fino al numero di risultati richiesto, senza scorrere
+ * l'universo. Le liste di ticker per parola sono array sostituiti a ogni
+ * modifica, così le letture non prendono lock. Se i risultati per
+ * prefisso non bastano, si cercano parole e ticker a distanza di modifica
+ * 1 o 2 con la stessa iniziale.
+ *
+ * Ordine dei risultati: ticker esatto, prefissi del ticker, prefissi
+ * della prima parola del nome, prefissi delle altre parole, infine
+ * corrispondenze approssimate per distanza crescente.
+ */
+@Component
+public class IndiceStrumenti {
+
+    // Lunghezza minima del termine per la ricerca approssimata
+    private static final int LUNGHEZZA_APPROSSIMATA = 3;
+
+    // Distanza di modifica massima per termini lunghi (1 fino a 5 caratteri)
+    private static final int DISTANZA_MASSIMA = 2;
+
+    // Ticker piegato -> ticker
+    private final ConcurrentSkipListMap<String, String> perTicker = new ConcurrentSkipListMap<>();
+
+    // Prima parola piegata del nome -> ticker degli strumenti il cui nome inizia così
+    private final ConcurrentSkipListMap<String, String[]> perPrimaParola = new ConcurrentSkipListMap<>();
+
+    // Altre parole piegate del nome -> ticker degli strumenti che le contengono
+    private final ConcurrentSkipListMap<String, String[]> perAltraParola = new ConcurrentSkipListMap<>();
+
+    // Ticker -> parole piegate del nome, in ordine
+    private final Map<String, String[]> parole = new ConcurrentHashMap<>();
+
+    /**
+     * Aggiunge uno strumento all'indice, o ne aggiorna il nome
+     */
+    public synchronized void aggiungi(String ticker, String nome) {
+        String[] nuove = parole(nome);
+        String[] precedenti = parole.get(ticker);
+        if (precedenti != null) {
+            if (Arrays.equals(precedenti, nuove)) {
+                return;
+            }
+            rimuovi(ticker);
+        }
+        perTicker.put(piega(ticker), ticker);
+        for (int i = 0; i < nuove.length; i++) {
+            (i == 0 ? perPrimaParola : perAltraParola).merge(nuove[i], new String[]{ticker}, IndiceStrumenti::unisci);
+        }
+        parole.put(ticker, nuove);
+    }
+
+    /**
+     * Toglie uno strumento dall'indice
+     */
+    public synchronized void rimuovi(String ticker) {
+        String[] precedenti = parole.remove(ticker);
+        if (precedenti == null) {
+            return;
+        }
+        perTicker.remove(piega(ticker));
+        for (int i = 0; i < precedenti.length; i++) {
+            (i == 0 ? perPrimaParola : perAltraParola)
+                .computeIfPresent(precedenti[i], (chiave, elenco) -> senza(elenco, ticker));
+        }
+    }
+
+    /**
+     * Allinea l'indice all'universo del listino, toccando solo gli strumenti
+     * aggiunti, rinominati o usciti
+     *
+     * @return numero di strumenti indicizzati
+     */
+    public synchronized int allinea(Istantanea listino) {
+        for (String ticker : new ArrayList<>(parole.keySet())) {
+            if (listino.ordinale(ticker) < 0) {
+                rimuovi(ticker);
+            }
+        }
+        for (int i = 0; i < listino.dimensione(); i++) {
+            aggiungi(listino.ticker(i), listino.nome(i));
+        }
+        return parole.size();
+    }
+
+    public int dimensione() {
+        return parole.size();
+    }
+
+    /**
+     * Ticker degli strumenti che corrispondono al testo, in ordine di rilevanza
+     *
+     * Il testo intero viene confrontato con i ticker; con più parole, la
+     * prima guida la ricerca nei nomi e le altre devono essere prefissi di
+     * parole dello stesso nome.
+     */
+    public List<String> cerca(String testo, int limite) {
+        String[] termini = parole(testo);
+        if (termini.length == 0 || limite <= 0) {
+            return List.of();
+        }
+        String interrogazione = piega(testo.strip());
+        Set<String> risultati = new LinkedHashSet<>();
+
+        // Il ticker esatto è il primo dell'intervallo, seguito dai prefissi in ordine alfabetico
+        for (String ticker : prefissi(perTicker, interrogazione).values()) {
+            if (risultati.size() >= limite) {
+                break;
+            }
+            risultati.add(ticker);
+        }
+        raccogli(risultati, prefissi(perPrimaParola, termini[0]).values(), termini, limite);
+        raccogli(risultati, prefissi(perAltraParola, termini[0]).values(), termini, limite);
+
+        if (risultati.size() < limite && termini[0].length() >= LUNGHEZZA_APPROSSIMATA) {
+            approssimati(risultati, interrogazione, termini, limite);
+        }
+        return new ArrayList<>(risultati);
+    }
+
+    /**
+     * Aggiunge ticker e parole a distanza di modifica limitata, con la stessa iniziale
+     */
+    private void approssimati(Set<String> risultati, String interrogazione, String[] termini, int limite) {
+        // Liste di ticker raggruppate per distanza, per aggiungerle dalla più vicina
+        List<List<String[]>> perDistanza = new ArrayList<>(DISTANZA_MASSIMA + 1);
+        for (int d = 0; d <= DISTANZA_MASSIMA; d++) {
+            perDistanza.add(new ArrayList<>());
+        }
+
+        int massimaTicker = distanzaMassima(interrogazione);
+        for (Map.Entry<String, String> voce : prefissi(perTicker, interrogazione.substring(0, 1)).entrySet()) {
+            int distanza = distanza(interrogazione, voce.getKey(), massimaTicker);
+            if (distanza <= massimaTicker) {
+                perDistanza.get(distanza).add(new String[]{voce.getValue()});
+            }
+        }
+
+        String termine = termini[0];
+        int massimaParola = distanzaMassima(termine);
+        String iniziale = termine.substring(0, 1);
+        for (ConcurrentSkipListMap<String, String[]> mappa : List.of(perPrimaParola, perAltraParola)) {
+            for (Map.Entry<String, String[]> voce : prefissi(mappa, iniziale).entrySet()) {
+                int distanza = distanza(termine, voce.getKey(), massimaParola);
+                if (distanza <= massimaParola) {
+                    perDistanza.get(distanza).add(voce.getValue());
+                }
+            }
+        }
+
+        for (List<String[]> elenchi : perDistanza) {
+            raccogli(risultati, elenchi, termini, limite);
+        }
+    }
+
+    // Aggiunge i ticker degli elenchi che soddisfano anche gli altri termini, fino al limite
+    private void raccogli(Set<String> risultati, Iterable<String[]> elenchi, String[] termini, int limite) {
+        for (String[] elenco : elenchi) {
+            for (String ticker : elenco) {
+                if (risultati.size() >= limite) {
+                    return;
+                }
+                if (termini.length == 1 || altriTermini(termini, parole.get(ticker))) {
+                    risultati.add(ticker);
+                }
+            }
+        }
+    }
+
+    // Termini oltre il primo: ognuno deve essere prefisso di una parola del nome
+    private static boolean altriTermini(String[] termini, String[] nome) {
+        if (nome == null) {
+            return false;
+        }
+        for (int t = 1; t < termini.length; t++) {
+            boolean trovato = false;
+            for (String parola : nome) {
+                if (parola.startsWith(termini[t])) {
+                    trovato = true;
+                    break;
+                }
+            }
+            if (!trovato) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <V> NavigableMap<String, V> prefissi(ConcurrentSkipListMap<String, V> mappa, String prefisso) {
+        return mappa.subMap(prefisso, true, prefisso + Character.MAX_VALUE, false);
+    }
+
+    private static int distanzaMassima(String termine) {
+        return termine.length() <= 5 ? 1 : DISTANZA_MASSIMA;
+    }
+
+    /**
+     * Distanza di Levenshtein, interrotta appena supera il massimo (restituisce massimo + 1)
+     */
+    static int distanza(String a, String b, int massimo) {
+        if (Math.abs(a.length() - b.length()) > massimo) {
+            return massimo + 1;
+        }
+        int[] precedente = new int[b.length() + 1];
+        int[] riga = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            precedente[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            riga[0] = i;
+            int minimo = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int costo = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                riga[j] = Math.min(Math.min(riga[j - 1] + 1, precedente[j] + 1), precedente[j - 1] + costo);
+                minimo = Math.min(minimo, riga[j]);
+            }
+            if (minimo > massimo) {
+                return massimo + 1;
+            }
+            int[] scambio = precedente;
+            precedente = riga;
+            riga = scambio;
+        }
+        return precedente[b.length()];
+    }
+
+    /**
+     * Minuscole senza accenti né altri segni diacritici
+     */
+    static String piega(String testo) {
+        boolean ascii = true;
+        for (int i = 0; i < testo.length() && ascii; i++) {
+            ascii = testo.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            return testo.toLowerCase(Locale.ROOT);
+        }
+        String scomposto = Normalizer.normalize(testo, Normalizer.Form.NFD);
+        StringBuilder piegato = new StringBuilder(scomposto.length());
+        for (int i = 0; i < scomposto.length(); i++) {
+            char c = scomposto.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                piegato.append(c);
+            }
+        }
+        return piegato.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parole piegate del testo, senza ripetizioni, separate da tutto ciò che non è lettera o cifra
+     */
+    static String[] parole(String testo) {
+        String piegato = piega(testo);
+        Set<String> parole = new LinkedHashSet<>();
+        int inizio = -1;
+        for (int i = 0; i <= piegato.length(); i++) {
+            boolean lettera = i < piegato.length() && Character.isLetterOrDigit(piegato.charAt(i));
+            if (lettera && inizio < 0) {
+                inizio = i;
+            } else if (!lettera && inizio >= 0) {
+                parole.add(piegato.substring(inizio, i));
+                inizio = -1;
+            }
+        }
+        return parole.toArray(new String[0]);
+    }
+
+    private static String[] unisci(String[] esistenti, String[] nuovi) {
+        String[] uniti = Arrays.copyOf(esistenti, esistenti.length + nuovi.length);
+        System.arraycopy(nuovi, 0, uniti, esistenti.length, nuovi.length);
+        return uniti;
+    }
+
+    // Restituisce null (voce rimossa dalla mappa) se non resta nessun ticker
+    private static String[] senza(String[] ticker, String daTogliere) {
+        String[] rimasti = new String[ticker.length];
+        int n = 0;
+        for (String t : ticker) {
+            if (!t.equals(daTogliere)) {
+                rimasti[n++] = t;
+            }
+        }
+        return n == 0 ? null : Arrays.copyOf(rimasti, n);
+    }
+}
@@ -0,0 +1,275 @@
+package it.easyfin.app.archivio;
+
+import it.easyfin.app.dominio.TipoOrdine;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Libro degli ordini in attesa, per ticker, organizzato in livelli di prezzo
+ *
+ * Ogni ticker ha due lati: gli ordini che scattano quando il prezzo scende
+ * fino al loro livello (acquisti limite) e quelli che scattano quando sale
+ * (vendite limite). I livelli di ciascun lato sono in un array ordinato di
+ * long disposto in modo che quelli raggiunti da un prezzo siano sempre in
+ * coda: un tick costa una ricerca binaria più il numero di ordini scattati.
+ * Nello stesso livello gli ordini scattano nell'ordine di inserimento.
+ */
+@Component
+public class LibroOrdini {
+
+    /**
+     * Movimento del prezzo che fa scattare un ordine
+     */
+    public enum Direzione {
+        RIBASSO,  // scatta con prezzo <= livello
+        RIALZO    // scatta con prezzo >= livello
+    }
+
+    private final Map<String, Libro> perTicker = new ConcurrentHashMap<>();
+
+    private final Map<Long, OrdineInAttesa> perId = new ConcurrentHashMap<>();
+
+    /**
+     * Inserisce un ordine nel libro del suo ticker
+     */
+    public void inserisci(OrdineInAttesa ordine) {
+        Libro libro = perTicker.computeIfAbsent(ordine.ticker, t -> new Libro());
+        synchronized (libro) {
+            libro.lato(ordine.direzione).inserisci(ordine);
+            perId.put(ordine.ordineId, ordine);
+        }
+    }
+
+    /**
+     * Rimuove un ordine dal libro
+     *
+     * @return l'ordine rimosso, oppure null se non è più in attesa
+     *         (già scattato o mai inserito)
+     */
+    public OrdineInAttesa rimuovi(long ordineId) {
+        OrdineInAttesa ordine = perId.get(ordineId);
+        if (ordine == null) {
+            return null;
+        }
+        Libro libro = perTicker.get(ordine.ticker);
+        synchronized (libro) {
+            if (perId.remove(ordineId) == null) {
+                return null;
+            }
+            libro.lato(ordine.direzione).rimuovi(ordine);
+            return ordine;
+        }
+    }
+
+    /**
+     * Estrae dal libro gli ordini del ticker fatti scattare dal prezzo
+     */
+    public List<OrdineInAttesa> scattati(String ticker, long prezzo) {
+        Libro libro = perTicker.get(ticker);
+        if (libro == null) {
+            return Collections.emptyList();
+        }
+        List<OrdineInAttesa> risultato = null;
+        synchronized (libro) {
+            for (Lato lato : libro.lati) {
+                risultato = lato.estrai(prezzo, risultato);
+            }
+            if (risultato == null) {
+                return Collections.emptyList();
+            }
+            for (OrdineInAttesa ordine : risultato) {
+                perId.remove(ordine.ordineId);
+            }
+        }
+        return risultato;
+    }
+
+    /**
+     * Numero di ordini in attesa
+     */
+    public int dimensione() {
+        return perId.size();
+    }
+
+    /**
+     * I due lati del libro di un ticker
+     */
+    private static final class Libro {
+
+        final Lato[] lati = {new Lato(Direzione.RIBASSO), new Lato(Direzione.RIALZO)};
+
+        Lato lato(Direzione direzione) {
+            return lati[direzione.ordinal()];
+        }
+    }
+
+    /**
+     * Livelli di un lato in ordine crescente di chiave
+     *
+     * La chiave è il prezzo per il lato RIBASSO e il prezzo cambiato di
+     * segno per il lato RIALZO: in entrambi i casi un prezzo fa scattare
+     * tutti i livelli con chiave >= della sua soglia, cioè una coda
+     * dell'array che viene troncata.
+     */
+    private static final class Lato {
+
+        final Direzione direzione;
+        long[] chiavi = new long[8];
+        Livello[] livelli = new Livello[8];
+        int numero;
+
+        Lato(Direzione direzione) {
+            this.direzione = direzione;
+        }
+
+        long chiave(long prezzo) {
+            return direzione == Direzione.RIBASSO ? prezzo : -prezzo;
+        }
+
+        void inserisci(OrdineInAttesa ordine) {
+            long chiave = chiave(ordine.prezzo);
+            int indice = Arrays.binarySearch(chiavi, 0, numero, chiave);
+            if (indice < 0) {
+                indice = -indice - 1;
+                if (numero == chiavi.length) {
+                    chiavi = Arrays.copyOf(chiavi, numero * 2);
+                    livelli = Arrays.copyOf(livelli, numero * 2);
+                }
+                System.arraycopy(chiavi, indice, chiavi, indice + 1, numero - indice);
+                System.arraycopy(livelli, indice, livelli, indice + 1, numero - indice);
+                chiavi[indice] = chiave;
+                livelli[indice] = new Livello();
+                numero++;
+            }
+            livelli[indice].ordini.addLast(ordine);
+        }
+
+        void rimuovi(OrdineInAttesa ordine) {
+            int indice = Arrays.binarySearch(chiavi, 0, numero, chiave(ordine.prezzo));
+            if (indice < 0) {
+                return;
+            }
+            ArrayDeque<OrdineInAttesa> ordini = livelli[indice].ordini;
+            ordini.remove(ordine);
+            if (ordini.isEmpty()) {
+                System.arraycopy(chiavi, indice + 1, chiavi, indice, numero - indice - 1);
+                System.arraycopy(livelli, indice + 1, livelli, indice, numero - indice - 1);
+                numero--;
+                livelli[numero] = null;
+            }
+        }
+
+        /**
+         * Toglie i livelli raggiunti dal prezzo, in priorità di prezzo
+         * (prima i livelli più lontani dal prezzo corrente)
+         */
+        List<OrdineInAttesa> estrai(long prezzo, List<OrdineInAttesa> risultato) {
+            long soglia = chiave(prezzo);
+            if (numero == 0 || chiavi[numero - 1] < soglia) {
+                return risultato;
+            }
+
+            int indice = Arrays.binarySearch(chiavi, 0, numero, soglia);
+            int primo = indice >= 0 ? indice : -indice - 1;
+            if (risultato == null) {
+                risultato = new ArrayList<>();
+            }
+            for (int i = numero - 1; i >= primo; i--) {
+                risultato.addAll(livelli[i].ordini);
+                livelli[i] = null;
+            }
+            numero = primo;
+            return risultato;
+        }
+    }
+
+    /**
+     * Ordini di un livello di prezzo in ordine di arrivo
+     */
+    private static final class Livello {
+
+        final ArrayDeque<OrdineInAttesa> ordini = new ArrayDeque<>(2);
+    }
+
+    /**
+     * Ordine in attesa: quanto serve per eseguirlo senza rileggerlo
+     */
+    public static final class OrdineInAttesa {
+
+        private final long ordineId;
+        private final long riferimento;
+        private final long utenteId;
+        private final long contoId;
+        private final TipoOrdine tipo;
+        private final String ticker;
+        private final int quantita;
+        private final long prezzo;
+        private final Direzione direzione;
+
+        public OrdineInAttesa(long ordineId, long riferimento, long utenteId, long contoId, TipoOrdine tipo,
+                              String ticker, int quantita, long prezzo, Direzione direzione) {
+            this.ordineId = ordineId;
+            this.riferimento = riferimento;
+            this.utenteId = utenteId;
+            this.contoId = contoId;
+            this.tipo = tipo;
+            this.ticker = ticker;
+            this.quantita = quantita;
+            this.prezzo = prezzo;
+            this.direzione = direzione;
+        }
+
+        public long getOrdineId() {
+            return ordineId;
+        }
+
+        public long getRiferimento() {
+            return riferimento;
+        }
+
+        public long getUtenteId() {
+            return utenteId;
+        }
+
+        public long getContoId() {
+            return contoId;
+        }
+
+        public TipoOrdine getTipo() {
+            return tipo;
+        }
+
+        public String getTicker() {
+            return ticker;
+        }
+
+        public int getQuantita() {
+            return quantita;
+        }
+
+        /**
+         * Livello di prezzo in centesimi
+         */
+        public long getPrezzo() {
+            return prezzo;
+        }
+
+        public Direzione getDirezione() {
+            return direzione;
+        }
+
+        /**
+         * Indica se il prezzo raggiunge il livello dell'ordine
+         */
+        public boolean scattaA(long prezzoCorrente) {
+            return direzione == Direzione.RIBASSO ? prezzoCorrente <= prezzo : prezzoCorrente >= prezzo;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package it.easyfin.app.archivio;
+
+import it.easyfin.app.archivio.LibroOrdini.Direzione;
+import it.easyfin.app.archivio.LibroOrdini.OrdineInAttesa;
+import it.easyfin.app.dominio.Denaro;
+import it.easyfin.app.dominio.TipoOrdine;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Soglie di stop-loss e take-profit delle posizioni, per ticker
+ *
+ * Usa la stessa struttura a livelli di prezzo del libro degli ordini
+ * limite: lo stop-loss scatta al ribasso, il take-profit al rialzo, e un
+ * tick visita solo le soglie che attraversa. Ogni soglia è una vendita
+ * in attesa dell'intera posizione, con la posizione come riferimento.
+ */
+@Component
+public class LibroSoglie {
+
+    private final LibroOrdini libro = new LibroOrdini();
+
+    /**
+     * Sostituisce le soglie di una posizione (Denaro.NESSUNO = nessuna soglia)
+     */
+    public synchronized void imposta(long posizioneId, long utenteId, long contoId, String ticker,
+                                     long stopLoss, long takeProfit) {
+        rimuovi(posizioneId);
+        if (stopLoss != Denaro.NESSUNO) {
+            libro.inserisci(soglia(posizioneId, utenteId, contoId, ticker, stopLoss, Direzione.RIBASSO));
+        }
+        if (takeProfit != Denaro.NESSUNO) {
+            libro.inserisci(soglia(posizioneId, utenteId, contoId, ticker, takeProfit, Direzione.RIALZO));
+        }
+    }
+
+    /**
+     * Rimuove entrambe le soglie di una posizione
+     */
+    public synchronized void rimuovi(long posizioneId) {
+        libro.rimuovi(chiave(posizioneId, Direzione.RIBASSO));
+        libro.rimuovi(chiave(posizioneId, Direzione.RIALZO));
+    }
+
+    /**
+     * Rimette nel libro una soglia estratta ma non eseguita
+     */
+    public void reinserisci(OrdineInAttesa soglia) {
+        libro.inserisci(soglia);
+    }
+
+    /**
+     * Estrae le soglie del ticker attraversate dal prezzo
+     */
+    public List<OrdineInAttesa> scattate(String ticker, long prezzo) {
+        return libro.scattati(ticker, prezzo);
+    }
+
+    /**
+     * Numero di soglie attive
+     */
+    public int dimensione() {
+        return libro.dimensione();
+    }
+
+    private static OrdineInAttesa soglia(long posizioneId, long utenteId, long contoId, String ticker,
+                                         long prezzo, Direzione direzione) {
+        return new OrdineInAttesa(chiave(posizioneId, direzione), posizioneId, utenteId, contoId,
+                                  TipoOrdine.VENDITA, ticker, 0, prezzo, direzione);
+    }
+
+    // Le due soglie di una posizione occupano id distinti nel libro
+    private static long chiave(long posizioneId, Direzione direzione) {
+        return posizioneId * 2 + direzione.ordinal();
+    }
+}
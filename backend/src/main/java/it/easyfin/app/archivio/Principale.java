@@ -0,0 +1,41 @@
+package it.easyfin.app.archivio;
+
+/**
+ * Identità compatta dell'utente autenticato
+ *
+ * Contiene quanto serve alle richieste autenticate per lavorare senza
+ * ricaricare l'utente dal database.
+ */
+public final class Principale {
+
+    private final long utenteId;
+    private final long contoId;
+    private final String email;
+
+    public Principale(long utenteId, long contoId, String email) {
+        this.utenteId = utenteId;
+        this.contoId = contoId;
+        this.email = email;
+    }
+
+    public long getUtenteId() {
+        return utenteId;
+    }
+
+    public long getContoId() {
+        return contoId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return "Principale{" +
+                "utenteId=" + utenteId +
+                ", contoId=" + contoId +
+                ", email='" + email + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,223 @@
+package it.easyfin.app.archivio;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Voce del giornale degli ordini
+ *
+ * Il contenuto è già codificato in binario alla creazione. I campi vanno
+ * riletti con il Lettore nello stesso ordine in cui li scrive il metodo
+ * di costruzione del tipo corrispondente. Importi e prezzi sono in
+ * centesimi.
+ */
+public final class VoceGiornale {
+
+    /**
+     * Tipi di voce. L'ordinale è scritto nel giornale: aggiungere solo in fondo.
+     *
+     * ORDINE e LIMITE sono le voci senza id dei giornali precedenti, ora
+     * sostituite da ESECUZIONE e APERTURA: vengono solo rilette.
+     */
+    public enum Tipo {
+        REGISTRAZIONE, ORDINE, MOVIMENTO, POSIZIONE, LIMITE, CHIUSURA, SOGLIE, ESECUZIONE, APERTURA, PASSWORD
+    }
+
+    private final Tipo tipo;
+    private final byte[] dati;
+
+    private VoceGiornale(Tipo tipo, byte[] dati) {
+        this.tipo = tipo;
+        this.dati = dati;
+    }
+
+    /**
+     * Nuovo utente: utenteId, contoId, nome, email, password, iban, saldo iniziale
+     */
+    public static VoceGiornale registrazione(long utenteId, long contoId, String nome, String email,
+                                             String password, String iban, long saldo) {
+        return new Scrittore(Tipo.REGISTRAZIONE)
+            .scriviLong(utenteId).scriviLong(contoId).scriviTesto(nome).scriviTesto(email)
+            .scriviTesto(password).scriviTesto(iban).scriviLong(saldo)
+            .voce();
+    }
+
+    /**
+     * Ordine eseguito: ordineId, utenteId, tipo, ticker, quantità, prezzo, data, P&L realizzato (Denaro.NESSUNO se assente)
+     *
+     * La voce ORDINE ha gli stessi campi senza ordineId.
+     */
+    public static VoceGiornale esecuzione(long ordineId, long utenteId, String tipo, String ticker, int quantita,
+                                          long prezzo, LocalDate data, long pnlRealizzato) {
+        return new Scrittore(Tipo.ESECUZIONE)
+            .scriviLong(ordineId).scriviLong(utenteId).scriviTesto(tipo).scriviTesto(ticker).scriviInt(quantita)
+            .scriviLong(prezzo).scriviData(data).scriviLong(pnlRealizzato)
+            .voce();
+    }
+
+    /**
+     * Movimento di cassa: contoId, data, descrizione, importo, saldo dopo il movimento
+     */
+    public static VoceGiornale movimento(long contoId, LocalDate data, String descrizione,
+                                         long importo, long saldoDopo) {
+        return new Scrittore(Tipo.MOVIMENTO)
+            .scriviLong(contoId).scriviData(data).scriviTesto(descrizione)
+            .scriviLong(importo).scriviLong(saldoDopo)
+            .voce();
+    }
+
+    /**
+     * Stato di una posizione dopo un ordine: utenteId, ticker, quantità (0 = chiusa), prezzo medio
+     */
+    public static VoceGiornale posizione(long utenteId, String ticker, int quantita, long prezzoMedio) {
+        return new Scrittore(Tipo.POSIZIONE)
+            .scriviLong(utenteId).scriviTesto(ticker).scriviInt(quantita).scriviLong(prezzoMedio)
+            .voce();
+    }
+
+    /**
+     * Ordine limite inserito nel libro: ordineId, riferimento, utenteId, tipo, ticker, quantità, prezzo limite, data
+     *
+     * La voce LIMITE ha gli stessi campi senza ordineId.
+     */
+    public static VoceGiornale apertura(long ordineId, long riferimento, long utenteId, String tipo, String ticker,
+                                        int quantita, long prezzoLimite, LocalDate data) {
+        return new Scrittore(Tipo.APERTURA)
+            .scriviLong(ordineId).scriviLong(riferimento).scriviLong(utenteId).scriviTesto(tipo).scriviTesto(ticker)
+            .scriviInt(quantita).scriviLong(prezzoLimite).scriviData(data)
+            .voce();
+    }
+
+    /**
+     * Ordine limite uscito dal libro: riferimento, stato finale
+     *
+     * Se eseguito, l'esecuzione è nella voce ESECUZIONE con lo stesso id
+     * che la precede (ORDINE, subito prima, nei giornali precedenti).
+     */
+    public static VoceGiornale chiusura(long riferimento, String stato) {
+        return new Scrittore(Tipo.CHIUSURA)
+            .scriviLong(riferimento).scriviTesto(stato)
+            .voce();
+    }
+
+    /**
+     * Soglie di una posizione: utenteId, ticker, stop-loss, take-profit (Denaro.NESSUNO se assenti)
+     */
+    public static VoceGiornale soglie(long utenteId, String ticker, long stopLoss, long takeProfit) {
+        return new Scrittore(Tipo.SOGLIE)
+            .scriviLong(utenteId).scriviTesto(ticker).scriviLong(stopLoss).scriviLong(takeProfit)
+            .voce();
+    }
+
+    /**
+     * Password cifrata al posto di quella in chiaro: utenteId, password
+     */
+    public static VoceGiornale password(long utenteId, String password) {
+        return new Scrittore(Tipo.PASSWORD)
+            .scriviLong(utenteId).scriviTesto(password)
+            .voce();
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Lettore dei campi della voce
+     */
+    public Lettore lettore() {
+        return new Lettore(ByteBuffer.wrap(dati));
+    }
+
+    byte[] dati() {
+        return dati;
+    }
+
+    static VoceGiornale leggi(Tipo tipo, byte[] dati) {
+        return new VoceGiornale(tipo, dati);
+    }
+
+    /**
+     * Lettura sequenziale dei campi di una voce
+     */
+    public static final class Lettore {
+
+        private final ByteBuffer buffer;
+
+        private Lettore(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        public long leggiLong() {
+            return buffer.getLong();
+        }
+
+        public int leggiInt() {
+            return buffer.getInt();
+        }
+
+        public String leggiTesto() {
+            byte[] testo = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(testo);
+            return new String(testo, StandardCharsets.UTF_8);
+        }
+
+        public LocalDate leggiData() {
+            return LocalDate.ofEpochDay(buffer.getInt());
+        }
+    }
+
+    /**
+     * Codifica dei campi di una nuova voce
+     */
+    private static final class Scrittore {
+
+        private final Tipo tipo;
+        private ByteBuffer buffer = ByteBuffer.allocate(128);
+
+        Scrittore(Tipo tipo) {
+            this.tipo = tipo;
+        }
+
+        Scrittore scriviLong(long valore) {
+            spazio(8).putLong(valore);
+            return this;
+        }
+
+        Scrittore scriviInt(int valore) {
+            spazio(4).putInt(valore);
+            return this;
+        }
+
+        Scrittore scriviData(LocalDate data) {
+            return scriviInt((int) data.toEpochDay());
+        }
+
+        Scrittore scriviTesto(String testo) {
+            byte[] byteTesto = testo.getBytes(StandardCharsets.UTF_8);
+            if (byteTesto.length > 0xFFFF) {
+                throw new IllegalArgumentException("Testo troppo lungo per il giornale");
+            }
+            spazio(2 + byteTesto.length).putShort((short) byteTesto.length).put(byteTesto);
+            return this;
+        }
+
+        VoceGiornale voce() {
+            byte[] dati = new byte[buffer.position()];
+            buffer.flip();
+            buffer.get(dati);
+            return new VoceGiornale(tipo, dati);
+        }
+
+        private ByteBuffer spazio(int necessario) {
+            if (buffer.remaining() < necessario) {
+                ByteBuffer piuGrande = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + necessario));
+                buffer.flip();
+                piuGrande.put(buffer);
+                buffer = piuGrande;
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package it.easyfin.app.config;
+
+import it.easyfin.app.archivio.Principale;
+import org.springdoc.core.utils.SpringDocUtils;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Registra il risolutore del principale per i parametri dei controller
+ */
+@Configuration
+public class AutenticazioneConfig implements WebMvcConfigurer {
+
+    static {
+        // Il principale non è un parametro della richiesta: niente da documentare in OpenAPI
+        SpringDocUtils.getConfig().addRequestWrapperToIgnore(Principale.class);
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new RisolutorePrincipale());
+    }
+}
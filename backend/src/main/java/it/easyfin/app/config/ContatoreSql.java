@@ -0,0 +1,57 @@
+package it.easyfin.app.config;
+
+/**
+ * Contatore delle istruzioni SQL preparate durante una richiesta
+ *
+ * Il contatore è legato al thread della richiesta; chi sposta il lavoro
+ * su un altro thread (ad esempio le corsie degli ordini) deve passarlo
+ * con corrente() e imposta().
+ */
+public final class ContatoreSql {
+
+    private static final ThreadLocal<int[]> CORRENTE = new ThreadLocal<>();
+
+    private ContatoreSql() {
+    }
+
+    /**
+     * Avvia un nuovo conteggio sul thread corrente
+     */
+    public static void avvia() {
+        CORRENTE.set(new int[1]);
+    }
+
+    /**
+     * Conteggio attivo sul thread corrente, oppure null
+     */
+    public static int[] corrente() {
+        return CORRENTE.get();
+    }
+
+    /**
+     * Associa al thread corrente un conteggio avviato altrove (null per rimuoverlo)
+     */
+    public static void imposta(int[] conteggio) {
+        if (conteggio == null) {
+            CORRENTE.remove();
+        } else {
+            CORRENTE.set(conteggio);
+        }
+    }
+
+    /**
+     * Termina il conteggio sul thread corrente e restituisce il totale
+     */
+    public static int termina() {
+        int[] conteggio = CORRENTE.get();
+        CORRENTE.remove();
+        return conteggio != null ? conteggio[0] : 0;
+    }
+
+    static void incrementa() {
+        int[] conteggio = CORRENTE.get();
+        if (conteggio != null) {
+            conteggio[0]++;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package it.easyfin.app.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registra il numero di istruzioni SQL eseguite da ogni richiesta, per endpoint
+ *
+ * Le risposte in streaming vengono contate solo fino all'uscita dal
+ * controller: il corpo è scritto su un altro thread.
+ */
+class ContatoreSqlInterceptor implements AsyncHandlerInterceptor {
+
+    private final MeterRegistry registro;
+    private final Map<String, DistributionSummary> perEndpoint = new ConcurrentHashMap<>();
+
+    ContatoreSqlInterceptor(MeterRegistry registro) {
+        this.registro = registro;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ContatoreSql.avvia();
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        registra(request, ContatoreSql.termina());
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                Object handler, Exception ex) {
+        registra(request, ContatoreSql.termina());
+    }
+
+    private void registra(HttpServletRequest request, int istruzioni) {
+        Object modello = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = modello != null ? modello.toString() : "UNKNOWN";
+        perEndpoint.computeIfAbsent(uri, u -> DistributionSummary.builder("easyfin.sql.istruzioni")
+                .description("Istruzioni SQL preparate per richiesta")
+                .tag("uri", u)
+                .register(registro))
+            .record(istruzioni);
+    }
+}
@@ -0,0 +1,50 @@
+package it.easyfin.app.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * DataSource che conta le istruzioni preparate nel ContatoreSql della richiesta
+ *
+ * Intercetta solo la creazione delle istruzioni sulla connessione, così
+ * conta sia le query di Hibernate sia i batch di JdbcTemplate (un batch
+ * vale una istruzione).
+ */
+class DataSourceContaIstruzioni extends DelegatingDataSource {
+
+    DataSourceContaIstruzioni(DataSource destinazione) {
+        super(destinazione);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return conteggiata(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return conteggiata(super.getConnection(username, password));
+    }
+
+    private Connection conteggiata(Connection connessione) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            (proxy, metodo, argomenti) -> {
+                switch (metodo.getName()) {
+                    case "prepareStatement", "prepareCall", "createStatement" -> ContatoreSql.incrementa();
+                    default -> {
+                    }
+                }
+                try {
+                    return metodo.invoke(connessione, argomenti);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+    }
+}
@@ -0,0 +1,66 @@
+package it.easyfin.app.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fabbrica dei thread applicativi (corsie ordini, invio SSE, cifratura password)
+ *
+ * Con spring.threads.virtual.enabled=true su Java 21 crea thread virtuali,
+ * come fa Spring Boot per Tomcat e per lo scheduler; altrimenti thread di
+ * piattaforma daemon con nome.
+ */
+@Component
+public class FabbricaThread {
+
+    private static final Logger log = LoggerFactory.getLogger(FabbricaThread.class);
+
+    private final boolean virtuali;
+
+    public FabbricaThread(@Value("${spring.threads.virtual.enabled:false}") boolean richiesti) {
+        boolean disponibili = Runtime.version().feature() >= 21;
+        if (richiesti && !disponibili) {
+            log.warn("Thread virtuali richiesti ma non disponibili su Java {}: uso thread di piattaforma",
+                Runtime.version().feature());
+        }
+        this.virtuali = richiesti && disponibili;
+    }
+
+    /**
+     * Indica se i thread creati sono virtuali
+     */
+    public boolean isVirtuali() {
+        return virtuali;
+    }
+
+    /**
+     * Fabbrica di thread con nomi prefisso-0, prefisso-1, ...
+     */
+    public ThreadFactory fabbrica(String prefisso) {
+        if (virtuali) {
+            return new VirtualThreadTaskExecutor(prefisso + "-").getVirtualThreadFactory();
+        }
+        return piattaforma(prefisso);
+    }
+
+    /**
+     * Fabbrica di thread di piattaforma daemon, anche in modalità virtuale
+     *
+     * Per lavoro intensivo di CPU: i thread virtuali non limitano l'uso
+     * dei core e toglierebbero i carrier alle richieste.
+     */
+    public ThreadFactory piattaforma(String prefisso) {
+        AtomicInteger contatore = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefisso + "-" + contatore.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package it.easyfin.app.config;
+
+import it.easyfin.app.archivio.Principale;
+import it.easyfin.app.servizio.ServizioToken;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Filtro che risolve il principale una sola volta per richiesta
+ *
+ * Con un header Authorization "Bearer" valido il principale (utente, conto,
+ * email) viene cercato nell'archivio in memoria e messo tra gli attributi
+ * della richiesta, da cui RisolutorePrincipale lo passa ai controller. Il
+ * filtro non rifiuta nulla: il 401 lo decidono i metodi che chiedono un
+ * Principale, così gli endpoint pubblici restano raggiungibili.
+ */
+@Component
+public class FiltroAutenticazione extends OncePerRequestFilter {
+
+    public static final String ATTRIBUTO_PRINCIPALE = FiltroAutenticazione.class.getName() + ".principale";
+
+    static final String PREFISSO_BEARER = "Bearer ";
+
+    @Autowired
+    private ServizioToken servizioToken;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader("Authorization");
+        if (header != null && header.startsWith(PREFISSO_BEARER)) {
+            Principale principale = servizioToken.principalePer(header.substring(PREFISSO_BEARER.length()));
+            if (principale != null) {
+                request.setAttribute(ATTRIBUTO_PRINCIPALE, principale);
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,32 @@
+package it.easyfin.app.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Rappresentazioni binarie delle risposte, scelte dall'header Accept
+ *
+ * application/cbor e application/x-jackson-smile usano gli stessi DTO e la
+ * stessa configurazione Jackson del JSON. I convertitori prendono il posto
+ * di quelli predefiniti di Spring MVC, dopo il JSON: senza un Accept
+ * esplicito la risposta resta JSON.
+ */
+@Configuration
+public class FormatiBinariConfig {
+
+    // Il builder di Spring Boot è prototype: ogni convertitore riceve il proprio
+    @Bean
+    public MappingJackson2CborHttpMessageConverter convertitoreCbor(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter convertitoreSmile(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
@@ -0,0 +1,99 @@
+package it.easyfin.app.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import it.easyfin.app.archivio.ArchivioMemoria;
+import it.easyfin.app.archivio.ArchivioValutazioni;
+import it.easyfin.app.servizio.DiffusoreQuotazioni;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Metriche applicative esposte su /actuator/prometheus
+ *
+ * Istogrammi di latenza per tutti gli endpoint HTTP,
+ * gauge di sessioni e cache, conteggio delle istruzioni SQL per richiesta.
+ * Fasi degli ordini e durata dei tick sono registrate dai rispettivi servizi.
+ */
+@Configuration
+public class MetricheConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private MeterRegistry registro;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ContatoreSqlInterceptor(registro)).addPathPatterns("/api/**");
+    }
+
+    /**
+     * Istogramma di latenza (bucket da 1 ms a 5 s) per le richieste HTTP
+     *
+     * Vale per tutti gli uri: Prometheus non accetta lo stesso nome di
+     * metrica con e senza bucket, e la raccolta fallirebbe.
+     */
+    @Bean
+    public static MeterFilter istogrammiEndpoint() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (!"http.server.requests".equals(id.getName())) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                    .percentilesHistogram(true)
+                    .minimumExpectedValue((double) Duration.ofMillis(1).toNanos())
+                    .maximumExpectedValue((double) Duration.ofSeconds(5).toNanos())
+                    .build()
+                    .merge(config);
+            }
+        };
+    }
+
+    /**
+     * Gauge letti al momento della raccolta, senza costi sulle richieste
+     */
+    @Bean
+    public MeterBinder metricheArchivi(ArchivioMemoria archivioMemoria,
+                                       ArchivioValutazioni archivioValutazioni,
+                                       DiffusoreQuotazioni diffusoreQuotazioni) {
+        return registro -> {
+            Gauge.builder("easyfin.sessioni.attive", archivioMemoria, ArchivioMemoria::contaToken)
+                .description("Token di sessione attivi")
+                .register(registro);
+            Gauge.builder("easyfin.valutazioni.cache", archivioValutazioni, ArchivioValutazioni::contaValutazioni)
+                .description("Valutazioni di portafoglio in cache")
+                .register(registro);
+            Gauge.builder("easyfin.quotazioni.abbonati", diffusoreQuotazioni, DiffusoreQuotazioni::contaAbbonati)
+                .description("Client collegati al flusso quotazioni")
+                .register(registro);
+        };
+    }
+
+    /**
+     * Avvolge il DataSource per contare le istruzioni SQL di ogni richiesta
+     */
+    @Bean
+    public static BeanPostProcessor contatoreIstruzioniSql() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String nome) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof DataSourceContaIstruzioni)) {
+                    return new DataSourceContaIstruzioni(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
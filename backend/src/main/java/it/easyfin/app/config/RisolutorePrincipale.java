@@ -0,0 +1,46 @@
+package it.easyfin.app.config;
+
+import it.easyfin.app.archivio.Principale;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Passa ai controller il principale risolto da FiltroAutenticazione
+ *
+ * Un parametro Principale rende l'endpoint autenticato: senza token la
+ * risposta è 401 "Token mancante", con un token sconosciuto o scaduto 401
+ * "Token non valido". Un parametro @Nullable
+ * riceve null quando il token manca, ma un token non valido è comunque 401.
+ */
+public class RisolutorePrincipale implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.getParameterType() == Principale.class;
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Object principale = webRequest.getAttribute(FiltroAutenticazione.ATTRIBUTO_PRINCIPALE,
+                                                    RequestAttributes.SCOPE_REQUEST);
+        if (principale != null) {
+            return principale;
+        }
+        String header = webRequest.getHeader("Authorization");
+        if (header != null && header.startsWith(FiltroAutenticazione.PREFISSO_BEARER)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token non valido");
+        }
+        if (parameter.isOptional()) {
+            return null;
+        }
+        throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
+            "Token mancante. Clicca 'Authorize' in alto a destra per autenticarti.");
+    }
+}
@@ -0,0 +1,39 @@
+package it.easyfin.app.config;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Vary: Accept sulle risposte scritte da Jackson
+ *
+ * Con i convertitori di FormatiBinariConfig ogni DTO può uscire in JSON,
+ * CBOR o Smile secondo l'header Accept, quindi una cache non può riusare
+ * la risposta per un Accept diverso. I 304 e il listino colonnare non
+ * passano di qui: l'header lo aggiungono i rispettivi controller.
+ */
+@ControllerAdvice
+public class VariaPerAccept implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return AbstractJackson2HttpMessageConverter.class.isAssignableFrom(converterType);
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        HttpHeaders intestazioni = response.getHeaders();
+        if (!intestazioni.getVary().contains(HttpHeaders.ACCEPT)) {
+            intestazioni.add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return body;
+    }
+}
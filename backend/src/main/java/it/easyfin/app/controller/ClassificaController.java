@@ -0,0 +1,34 @@
+package it.easyfin.app.controller;
+
+import it.easyfin.app.archivio.Principale;
+import it.easyfin.app.dto.ClassificaRisposta;
+import it.easyfin.app.servizio.ServizioClassifica;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller per la classifica degli utenti
+ */
+@RestController
+@RequestMapping("/api/classifica")
+@CrossOrigin(origins = "*")
+@Tag(name = "Classifica", description = "Classifica degli utenti per NAV e rendimento")
+public class ClassificaController {
+
+    @Autowired
+    private ServizioClassifica servizioClassifica;
+
+    @GetMapping
+    @Operation(summary = "Classifica",
+               description = "Primi K utenti per NAV e rendimento sul saldo iniziale; " +
+                             "con il token include anche la posizione dell'utente")
+    public ResponseEntity<ClassificaRisposta> classifica(
+            @Nullable Principale principale,
+            @RequestParam(defaultValue = "10") int top) {
+        return ResponseEntity.ok(servizioClassifica.classifica(principale, top));
+    }
+}
@@ -1,20 +1,19 @@
 package it.easyfin.app.controller;
 
+import it.easyfin.app.archivio.Principale;
 import it.easyfin.app.dto.ContoRisposta;
-import it.easyfin.app.dto.MovimentoCassaDto;
-import it.easyfin.app.servizio.ServizioAutenticazione;
-import it.easyfin.app.servizio.ServizioPortafoglio;
+import it.easyfin.app.servizio.ServizioConto;
+import it.easyfin.app.servizio.ServizioVersioni;
+import it.easyfin.app.servizio.ServizioVersioni.Formato;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.server.ResponseStatusException;
-
-import java.util.List;
-import java.util.stream.Collectors;
+import org.springframework.web.context.request.WebRequest;
 
 /**
  * Controller per la gestione del conto
@@ -26,45 +25,32 @@ import java.util.stream.Collectors;
 public class ContoController {
     
     @Autowired
-    private ServizioAutenticazione servizioAutenticazione;
+    private ServizioConto servizioConto;
     
     @Autowired
-    private ServizioPortafoglio servizioPortafoglio;
+    private ServizioVersioni servizioVersioni;
     
     @GetMapping("/me")
     @Operation(summary = "Ottieni dettagli conto", 
-               description = "Restituisce saldo, IBAN, movimenti e NAV")
+               description = "Restituisce saldo, IBAN, una pagina di movimenti (dal più recente) e NAV")
     @ApiResponse(responseCode = "200", description = "Dettagli conto")
+    @ApiResponse(responseCode = "304", description = "Conto non modificato (If-None-Match)")
+    @ApiResponse(responseCode = "400", description = "Cursore o limite non validi")
     @ApiResponse(responseCode = "401", description = "Non autorizzato")
-    public ResponseEntity<ContoRisposta> getConto(@RequestHeader(value = "Authorization", required = false) String token) {
-        // Verifica formato token
-        if (token == null || !token.startsWith("Bearer ")) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token mancante. Clicca 'Authorize' in alto a destra per autenticarti.");
+    public ResponseEntity<ContoRisposta> getConto(
+            Principale principale,
+            @RequestParam(value = "cursore", required = false) String cursore,
+            @RequestParam(value = "limite", defaultValue = "50") int limite,
+            WebRequest richiesta,
+            HttpServletResponse rispostaHttp) {
+        // Il formato dipende da Accept: l'header vale anche per il 304
+        rispostaHttp.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        // Decide il 304 solo da memoria, prima di leggere il conto dal database
+        Formato formato = Formato.negoziato(richiesta.getHeader("Accept"));
+        if (richiesta.checkNotModified(servizioVersioni.etagConto(principale, formato))) {
+            return null;
         }
-        
-        String tokenValue = token.substring(7);
-        var utente = servizioAutenticazione.trovaUtentePerToken(tokenValue);
-        
-        // Ottieni portafoglio per calcolare totali
-        var portafoglio = servizioPortafoglio.portafoglioPer(tokenValue);
-        
-        // Converti movimenti
-        List<MovimentoCassaDto> movimenti = utente.getConto().getMovimenti().stream()
-            .map(m -> new MovimentoCassaDto(
-                m.getData().toString(),
-                m.getDescrizione(),
-                m.getImporto()
-            ))
-            .collect(Collectors.toList());
-        
-        ContoRisposta risposta = new ContoRisposta(
-            utente.getConto().getIban(),
-            utente.getConto().getSaldoContante(),
-            movimenti,
-            portafoglio.totali.valoreStrumenti,
-            portafoglio.totali.nav
-        );
-        
+        ContoRisposta risposta = servizioConto.contoPer(principale, cursore, limite);
         return ResponseEntity.ok(risposta);
     }
 }
@@ -1,16 +1,22 @@
 package it.easyfin.app.controller;
 
+import it.easyfin.app.archivio.Principale;
 import it.easyfin.app.dto.*;
+import it.easyfin.app.servizio.MotoreOrdini;
 import it.easyfin.app.servizio.ServizioPortafoglio;
+import it.easyfin.app.servizio.ServizioVersioni;
+import it.easyfin.app.servizio.ServizioVersioni.Formato;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.server.ResponseStatusException;
-import java.util.List;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * Controller per la gestione del portafoglio
@@ -24,33 +30,58 @@ public class PortafoglioController {
     @Autowired
     private ServizioPortafoglio servizioPortafoglio;
 
+    @Autowired
+    private MotoreOrdini motoreOrdini;
+
+    @Autowired
+    private ServizioVersioni servizioVersioni;
+
     @GetMapping("/")
     @Operation(summary = "Ottieni portafoglio", 
-               description = "Restituisce posizioni e totali del portafoglio")
+               description = "Restituisce posizioni e totali del portafoglio in JSON, CBOR o Smile (header Accept); " +
+                             "con If-None-Match risponde 304 se non è cambiato")
     @ApiResponse(responseCode = "200", description = "Portafoglio")
+    @ApiResponse(responseCode = "304", description = "Portafoglio non modificato")
     @ApiResponse(responseCode = "401", description = "Non autorizzato")
-    public ResponseEntity<PortafoglioRisposta> getPortafoglio(@RequestHeader(value = "Authorization", required = false) String token) {
-        if (token == null || !token.startsWith("Bearer ")) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token mancante. Clicca 'Authorize' in alto a destra per autenticarti.");
+    public ResponseEntity<PortafoglioRisposta> getPortafoglio(Principale principale,
+                                                              WebRequest richiesta,
+                                                              HttpServletResponse rispostaHttp) {
+        // Il formato dipende da Accept: l'header vale anche per il 304
+        rispostaHttp.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        // Decide il 304 solo da memoria, prima di leggere o serializzare il portafoglio
+        Formato formato = Formato.negoziato(richiesta.getHeader("Accept"));
+        if (richiesta.checkNotModified(servizioVersioni.etagPortafoglio(principale, formato))) {
+            return null;
         }
-        
-        String tokenValue = token.substring(7);
-        PortafoglioRisposta portafoglio = servizioPortafoglio.portafoglioPer(tokenValue);
+        PortafoglioRisposta portafoglio = servizioPortafoglio.portafoglioPer(principale);
         return ResponseEntity.ok(portafoglio);
     }
 
     @GetMapping("/ordini")
-    @Operation(summary = "Storico ordini", description = "Restituisce lo storico degli ordini eseguiti")
+    @Operation(summary = "Storico ordini", description = "Restituisce lo storico degli ordini eseguiti, serializzato in streaming")
     @ApiResponse(responseCode = "200", description = "Storico ordini")
     @ApiResponse(responseCode = "401", description = "Non autorizzato")
-    public ResponseEntity<List<OrdineDto>> getOrdini(@RequestHeader(value = "Authorization", required = false) String token) {
-        if (token == null || !token.startsWith("Bearer ")) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token mancante. Clicca 'Authorize' in alto a destra per autenticarti.");
-        }
-        
-        String tokenValue = token.substring(7);
-        List<OrdineDto> ordini = servizioPortafoglio.storicoOrdini(tokenValue);
-        return ResponseEntity.ok(ordini);
+    public ResponseEntity<StreamingResponseBody> getOrdini(Principale principale) {
+        // Utente letto prima di iniziare a scrivere la risposta
+        long utenteId = principale.getUtenteId();
+        StreamingResponseBody corpo = uscita -> servizioPortafoglio.scriviStoricoOrdini(utenteId, uscita);
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(corpo);
+    }
+
+    @GetMapping("/ordini/pagina")
+    @Operation(summary = "Storico ordini paginato", 
+               description = "Restituisce una pagina dello storico ordini; passare cursoreSuccessivo come cursore per la pagina seguente")
+    @ApiResponse(responseCode = "200", description = "Pagina dello storico ordini")
+    @ApiResponse(responseCode = "400", description = "Cursore o limite non validi")
+    @ApiResponse(responseCode = "401", description = "Non autorizzato")
+    public ResponseEntity<PaginaOrdiniRisposta> getPaginaOrdini(
+            Principale principale,
+            @RequestParam(value = "cursore", required = false) String cursore,
+            @RequestParam(value = "limite", defaultValue = "50") int limite) {
+        PaginaOrdiniRisposta pagina = servizioPortafoglio.paginaOrdini(principale, cursore, limite);
+        return ResponseEntity.ok(pagina);
     }
 
     @PostMapping("/ordini/acquisto")
@@ -59,14 +90,9 @@ public class PortafoglioController {
     @ApiResponse(responseCode = "400", description = "Errore validazione")
     @ApiResponse(responseCode = "401", description = "Non autorizzato")
     public ResponseEntity<PortafoglioRisposta> acquista(
-            @RequestHeader(value = "Authorization", required = false) String token,
+            Principale principale,
             @RequestBody AcquistoRichiesta richiesta) {
-        if (token == null || !token.startsWith("Bearer ")) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token mancante. Clicca 'Authorize' in alto a destra per autenticarti.");
-        }
-        
-        String tokenValue = token.substring(7);
-        PortafoglioRisposta portafoglio = servizioPortafoglio.acquista(tokenValue, richiesta);
+        PortafoglioRisposta portafoglio = motoreOrdini.acquista(principale, richiesta);
         return ResponseEntity.ok(portafoglio);
     }
 
@@ -76,14 +102,66 @@ public class PortafoglioController {
     @ApiResponse(responseCode = "400", description = "Errore validazione")
     @ApiResponse(responseCode = "401", description = "Non autorizzato")
     public ResponseEntity<PortafoglioRisposta> vendi(
-            @RequestHeader(value = "Authorization", required = false) String token,
+            Principale principale,
             @RequestBody VenditaRichiesta richiesta) {
-        if (token == null || !token.startsWith("Bearer ")) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token mancante. Clicca 'Authorize' in alto a destra per autenticarti.");
-        }
-        
-        String tokenValue = token.substring(7);
-        PortafoglioRisposta portafoglio = servizioPortafoglio.vendi(tokenValue, richiesta);
+        PortafoglioRisposta portafoglio = motoreOrdini.vendi(principale, richiesta);
         return ResponseEntity.ok(portafoglio);
     }
+
+    @PostMapping("/ordini/batch")
+    @Operation(summary = "Ordini batch", 
+               description = "Esegue una lista di acquisti e vendite in un'unica transazione. " +
+                             "Modalità TUTTO_O_NIENTE (predefinita) o MIGLIOR_SFORZO")
+    @ApiResponse(responseCode = "200", description = "Esiti delle singole gambe e portafoglio risultante")
+    @ApiResponse(responseCode = "400", description = "Errore validazione")
+    @ApiResponse(responseCode = "401", description = "Non autorizzato")
+    public ResponseEntity<OrdiniBatchRisposta> eseguiBatch(
+            Principale principale,
+            @RequestBody OrdiniBatchRichiesta richiesta) {
+        OrdiniBatchRisposta risposta = motoreOrdini.eseguiBatch(principale, richiesta);
+        return ResponseEntity.ok(risposta);
+    }
+
+    @PostMapping("/ordini/limite")
+    @Operation(summary = "Ordine limite", 
+               description = "Inserisce un acquisto o una vendita che viene eseguito quando il prezzo " +
+                             "scende (acquisto) o sale (vendita) fino al prezzo limite")
+    @ApiResponse(responseCode = "200", description = "Ordine in attesa, oppure già eseguito")
+    @ApiResponse(responseCode = "400", description = "Errore validazione")
+    @ApiResponse(responseCode = "401", description = "Non autorizzato")
+    public ResponseEntity<OrdineDto> inserisciLimite(
+            Principale principale,
+            @RequestBody OrdineLimiteRichiesta richiesta) {
+        OrdineDto ordine = motoreOrdini.inserisciLimite(principale, richiesta);
+        return ResponseEntity.ok(ordine);
+    }
+
+    @DeleteMapping("/ordini/{id}")
+    @Operation(summary = "Annulla ordine limite", description = "Annulla un ordine limite ancora in attesa")
+    @ApiResponse(responseCode = "200", description = "Ordine annullato")
+    @ApiResponse(responseCode = "401", description = "Non autorizzato")
+    @ApiResponse(responseCode = "404", description = "Ordine non trovato")
+    @ApiResponse(responseCode = "409", description = "Ordine già eseguito, annullato o in esecuzione")
+    public ResponseEntity<OrdineDto> annullaLimite(
+            Principale principale,
+            @PathVariable long id) {
+        OrdineDto ordine = motoreOrdini.annullaLimite(principale, id);
+        return ResponseEntity.ok(ordine);
+    }
+
+    @PutMapping("/posizioni/{ticker}/soglie")
+    @Operation(summary = "Soglie della posizione", 
+               description = "Imposta stop-loss e take-profit della posizione (null per rimuoverli). " +
+                             "Quando un tick attraversa una soglia l'intera posizione viene venduta")
+    @ApiResponse(responseCode = "200", description = "Soglie impostate")
+    @ApiResponse(responseCode = "400", description = "Errore validazione")
+    @ApiResponse(responseCode = "401", description = "Non autorizzato")
+    @ApiResponse(responseCode = "404", description = "Posizione non trovata")
+    public ResponseEntity<SoglieDto> impostaSoglie(
+            Principale principale,
+            @PathVariable String ticker,
+            @RequestBody SoglieRichiesta richiesta) {
+        SoglieDto soglie = motoreOrdini.impostaSoglie(principale, ticker, richiesta);
+        return ResponseEntity.ok(soglie);
+    }
 }
@@ -1,12 +1,20 @@
 package it.easyfin.app.controller;
 
+import it.easyfin.app.dominio.Denaro;
+import it.easyfin.app.dto.CandelaDto;
+import it.easyfin.app.dto.RivalutazioneDto;
 import it.easyfin.app.dto.StrumentoDto;
+import it.easyfin.app.servizio.DiffusoreQuotazioni;
 import it.easyfin.app.servizio.ServizioQuotazioni;
+import it.easyfin.app.servizio.ServizioRivalutazione;
+import it.easyfin.app.servizio.ServizioStorico;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -22,15 +30,47 @@ public class QuotazioniController {
     
     @Autowired
     private ServizioQuotazioni servizioQuotazioni;
+
+    @Autowired
+    private DiffusoreQuotazioni diffusoreQuotazioni;
+
+    @Autowired
+    private ServizioStorico servizioStorico;
+
+    @Autowired
+    private ServizioRivalutazione servizioRivalutazione;
     
     @PostMapping("/aggiorna")
     @Operation(summary = "Aggiorna prezzi", 
                description = "Applica rumore ±2% ai prezzi di tutti gli strumenti")
     public ResponseEntity<List<StrumentoDto>> aggiornaPrezzi() {
         List<StrumentoDto> strumenti = servizioQuotazioni.aggiornaPrezziConRumore().stream()
-            .map(s -> new StrumentoDto(s.getTicker(), s.getNome(), s.getPrezzoCorrente()))
+            .map(s -> new StrumentoDto(s.getTicker(), s.getNome(), Denaro.inEuro(s.getPrezzoCorrente())))
             .collect(Collectors.toList());
         
         return ResponseEntity.ok(strumenti);
     }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Flusso quotazioni",
+               description = "Server-Sent Events con il listino completo all'iscrizione e le sole variazioni dopo ogni tick")
+    public SseEmitter stream() {
+        return diffusoreQuotazioni.iscrivi();
+    }
+
+    @GetMapping("/{ticker}/candles")
+    @Operation(summary = "Candele OHLC",
+               description = "Ultime candele di uno strumento per intervallo (1m, 5m, 15m, 1h, 1d), dalla più vecchia")
+    public ResponseEntity<List<CandelaDto>> candele(@PathVariable String ticker,
+                                                    @RequestParam(name = "interval", defaultValue = "1m") String intervallo,
+                                                    @RequestParam(defaultValue = "100") int limite) {
+        return ResponseEntity.ok(servizioStorico.candele(ticker, intervallo, limite));
+    }
+
+    @GetMapping("/rivalutazione")
+    @Operation(summary = "Rivalutazione di sistema",
+               description = "NAV e P&L non realizzato complessivi di tutti i conti, ricalcolati dopo ogni tick")
+    public ResponseEntity<RivalutazioneDto> rivalutazione() {
+        return ResponseEntity.ok(servizioRivalutazione.riepilogo());
+    }
 }
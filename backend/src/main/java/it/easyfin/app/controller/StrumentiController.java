@@ -1,12 +1,20 @@
 package it.easyfin.app.controller;
 
+import it.easyfin.app.dominio.Denaro;
 import it.easyfin.app.dto.StrumentoDto;
+import it.easyfin.app.servizio.ListinoColonnare;
 import it.easyfin.app.servizio.ServizioQuotazioni;
+import it.easyfin.app.servizio.ServizioVersioni;
+import it.easyfin.app.servizio.ServizioVersioni.Formato;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -23,12 +31,54 @@ public class StrumentiController {
     @Autowired
     private ServizioQuotazioni servizioQuotazioni;
     
+    @Autowired
+    private ServizioVersioni servizioVersioni;
+    
     @GetMapping("/")
     @Operation(summary = "Lista strumenti", 
-               description = "Restituisce l'elenco di tutti gli strumenti disponibili")
-    public ResponseEntity<List<StrumentoDto>> getStrumenti() {
+               description = "Restituisce l'elenco di tutti gli strumenti disponibili in JSON, CBOR o Smile " +
+                             "(header Accept); con If-None-Match risponde 304 finché il listino non cambia")
+    public ResponseEntity<List<StrumentoDto>> getStrumenti(WebRequest richiesta, HttpServletResponse rispostaHttp) {
+        // Il formato dipende da Accept: l'header vale anche per il 304
+        rispostaHttp.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        // La versione del listino avanza a ogni tick: 304 senza costruire l'elenco
+        Formato formato = Formato.negoziato(richiesta.getHeader("Accept"));
+        if (richiesta.checkNotModified(servizioVersioni.etagListino(formato))) {
+            return null;
+        }
         List<StrumentoDto> strumenti = servizioQuotazioni.elencoStrumenti().stream()
-            .map(s -> new StrumentoDto(s.getTicker(), s.getNome(), s.getPrezzoCorrente()))
+            .map(s -> new StrumentoDto(s.getTicker(), s.getNome(), Denaro.inEuro(s.getPrezzoCorrente())))
+            .collect(Collectors.toList());
+        
+        return ResponseEntity.ok(strumenti);
+    }
+    
+    // Scelto solo con Accept esplicito sul media type colonnare: con un Accept
+    // generico Spring preferisce il metodo senza produces, cioè getStrumenti
+    @GetMapping(value = "/", produces = ListinoColonnare.MEDIA_TYPE)
+    @Operation(summary = "Listino colonnare",
+               description = "Listino completo in formato binario a colonne: prezzi in centesimi a larghezza fissa, " +
+                             "poi ticker e nomi; pensato per i client che interrogano spesso tutto l'universo")
+    public ResponseEntity<byte[]> getListinoColonnare(WebRequest richiesta, HttpServletResponse rispostaHttp) {
+        // Scelto da Accept al posto di getStrumenti sullo stesso URL
+        rispostaHttp.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (richiesta.checkNotModified(servizioVersioni.etagListino(Formato.COLONNARE))) {
+            return null;
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(ListinoColonnare.MEDIA_TYPE))
+            .body(servizioQuotazioni.listinoColonnare());
+    }
+    
+    @GetMapping("/cerca")
+    @Operation(summary = "Cerca strumenti",
+               description = "Autocompletamento per prefisso del ticker o delle parole del nome, " +
+                             "senza distinzione di maiuscole e accenti; i risultati sono ordinati per rilevanza")
+    public ResponseEntity<List<StrumentoDto>> cercaStrumenti(
+            @RequestParam(defaultValue = "") String q,
+            @RequestParam(defaultValue = "10") int limite) {
+        List<StrumentoDto> strumenti = servizioQuotazioni.cercaStrumenti(q, limite).stream()
+            .map(s -> new StrumentoDto(s.getTicker(), s.getNome(), Denaro.inEuro(s.getPrezzoCorrente())))
             .collect(Collectors.toList());
         
         return ResponseEntity.ok(strumenti);
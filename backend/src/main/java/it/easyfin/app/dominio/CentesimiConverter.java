@@ -0,0 +1,24 @@
+package it.easyfin.app.dominio;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Mappa i centesimi delle entità sulle colonne double esistenti in euro
+ *
+ * Lo schema e i dati già salvati restano invariati. Una colonna null
+ * corrisponde a {@link Denaro#NESSUNO}.
+ */
+@Converter
+public class CentesimiConverter implements AttributeConverter<Long, Double> {
+
+    @Override
+    public Double convertToDatabaseColumn(Long centesimi) {
+        return centesimi == null || centesimi == Denaro.NESSUNO ? null : Denaro.inEuro(centesimi);
+    }
+
+    @Override
+    public Long convertToEntityAttribute(Double euro) {
+        return euro == null ? Denaro.NESSUNO : Denaro.daEuro(euro);
+    }
+}
@@ -13,6 +13,9 @@ import java.util.List;
 @Table(name = "conti")
 public class Conto {
     
+    // Saldo di apertura in centesimi (10.000,00 €)
+    public static final long SALDO_INIZIALE = 1_000_000;
+    
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -21,7 +24,8 @@ public class Conto {
     private String iban;
     
     @Column(nullable = false)
-    private double saldoContante = 10000.00;
+    @Convert(converter = CentesimiConverter.class)
+    private long saldoContante = SALDO_INIZIALE;
     
     @OneToMany(mappedBy = "conto", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<MovimentoCassa> movimenti = new ArrayList<>();
@@ -32,13 +36,13 @@ public class Conto {
     // Costruttore con parametri
     public Conto(String iban) {
         this.iban = iban;
-        this.saldoContante = 10000.00;
+        this.saldoContante = SALDO_INIZIALE;
     }
     
     /**
-     * Deposita denaro sul conto e crea un movimento
+     * Deposita denaro sul conto e crea un movimento (importo in centesimi)
      */
-    public void deposita(double importo, String descrizione) {
+    public void deposita(long importo, String descrizione) {
         if (importo <= 0) {
             throw new IllegalArgumentException("Importo deve essere positivo");
         }
@@ -55,9 +59,9 @@ public class Conto {
     }
     
     /**
-     * Preleva denaro dal conto e crea un movimento
+     * Preleva denaro dal conto e crea un movimento (importo in centesimi)
      */
-    public void preleva(double importo, String descrizione) {
+    public void preleva(long importo, String descrizione) {
         if (importo <= 0) {
             throw new IllegalArgumentException("Importo deve essere positivo");
         }
@@ -94,11 +98,11 @@ public class Conto {
         this.iban = iban;
     }
     
-    public double getSaldoContante() {
+    public long getSaldoContante() {
         return saldoContante;
     }
     
-    public void setSaldoContante(double saldoContante) {
+    public void setSaldoContante(long saldoContante) {
         this.saldoContante = saldoContante;
     }
     
@@ -0,0 +1,85 @@
+package it.easyfin.app.dominio;
+
+/**
+ * Importi e prezzi in virgola fissa: long in centesimi di euro
+ *
+ * Tutti i calcoli di saldo, prezzo medio, P&L e NAV avvengono su long
+ * senza allocazioni; la conversione in euro (double) avviene solo ai
+ * bordi, nelle risposte REST e nelle colonne del database.
+ */
+public final class Denaro {
+
+    /**
+     * Centesimi per euro
+     */
+    public static final long SCALA = 100;
+
+    /**
+     * Valore assente, ad esempio il P&L realizzato di un acquisto
+     */
+    public static final long NESSUNO = Long.MIN_VALUE;
+
+    private Denaro() {}
+
+    /**
+     * Converte euro in centesimi arrotondando al centesimo più vicino
+     */
+    public static long daEuro(double euro) {
+        return Math.round(euro * SCALA);
+    }
+
+    /**
+     * Converte centesimi in euro
+     */
+    public static double inEuro(long centesimi) {
+        return (double) centesimi / SCALA;
+    }
+
+    /**
+     * Converte centesimi in euro, null se il valore è assente
+     */
+    public static Double inEuroOpzionale(long centesimi) {
+        return centesimi == NESSUNO ? null : inEuro(centesimi);
+    }
+
+    /**
+     * Controvalore di una quantità a un prezzo
+     */
+    public static long controvalore(long prezzo, int quantita) {
+        return Math.multiplyExact(prezzo, (long) quantita);
+    }
+
+    /**
+     * Nuovo prezzo medio dopo un acquisto, arrotondato al centesimo
+     */
+    public static long prezzoMedio(int quantita, long prezzoMedio, int quantitaAggiunta, long prezzo) {
+        long costo = controvalore(prezzoMedio, quantita) + controvalore(prezzo, quantitaAggiunta);
+        return dividi(costo, (long) quantita + quantitaAggiunta);
+    }
+
+    /**
+     * P&L di una quantità valutata a un prezzo rispetto al prezzo medio
+     */
+    public static long pnl(long prezzo, long prezzoMedio, int quantita) {
+        return controvalore(prezzo - prezzoMedio, quantita);
+    }
+
+    /**
+     * Applica una variazione percentuale a un prezzo, arrotondando al centesimo
+     */
+    public static long varia(long prezzo, double variazione) {
+        return Math.round(prezzo * (1 + variazione));
+    }
+
+    /**
+     * Divisione arrotondata al più vicino, con le metà lontano da zero
+     */
+    public static long dividi(long dividendo, long divisore) {
+        long quoziente = dividendo / divisore;
+        long resto = dividendo % divisore;
+        if (2 * Math.abs(resto) >= Math.abs(divisore)) {
+            quoziente += (dividendo ^ divisore) < 0 ? -1 : 1;
+        }
+        return quoziente;
+    }
+}
@@ -8,7 +8,10 @@ import java.time.LocalDate;
  * Entità MovimentoCassa per tracciare i movimenti del conto
  */
 @Entity
-@Table(name = "movimenti_cassa")
+@Table(name = "movimenti_cassa", indexes = {
+    // Movimenti per conto paginati a chiave su (data, id)
+    @Index(name = "idx_movimenti_conto_data_id", columnList = "conto_id, data, id")
+})
 public class MovimentoCassa {
     
     @Id
@@ -22,7 +25,8 @@ public class MovimentoCassa {
     private String descrizione;
     
     @Column(nullable = false)
-    private double importo; // + entrata, - uscita
+    @Convert(converter = CentesimiConverter.class)
+    private long importo; // centesimi: + entrata, - uscita
     
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "conto_id", nullable = false)
@@ -32,7 +36,7 @@ public class MovimentoCassa {
     public MovimentoCassa() {}
     
     // Costruttore con parametri
-    public MovimentoCassa(LocalDate data, String descrizione, double importo, Conto conto) {
+    public MovimentoCassa(LocalDate data, String descrizione, long importo, Conto conto) {
         this.data = data;
         this.descrizione = descrizione;
         this.importo = importo;
@@ -64,11 +68,11 @@ public class MovimentoCassa {
         this.descrizione = descrizione;
     }
     
-    public double getImporto() {
+    public long getImporto() {
         return importo;
     }
     
-    public void setImporto(double importo) {
+    public void setImporto(long importo) {
         this.importo = importo;
     }
     
@@ -8,7 +8,10 @@ import java.time.LocalDate;
  * Entità Ordine per rappresentare gli ordini di trading
  */
 @Entity
-@Table(name = "ordini")
+@Table(name = "ordini", indexes = {
+    // Storico per utente paginato a chiave su (data, id)
+    @Index(name = "idx_ordini_utente_data_id", columnList = "utente_id, data, id")
+})
 public class Ordine {
     
     @Id
@@ -30,7 +33,8 @@ public class Ordine {
     private int quantita;
     
     @Column(nullable = false)
-    private double prezzoEsecuzione;
+    @Convert(converter = CentesimiConverter.class)
+    private long prezzoEsecuzione;
     
     @Column(nullable = false)
     private LocalDate data;
@@ -40,14 +44,22 @@ public class Ordine {
     private StatoOrdine stato;
     
     @Column
-    private Double pnlRealizzato; // solo per vendite, altrimenti null
+    @Convert(converter = CentesimiConverter.class)
+    private long pnlRealizzato = Denaro.NESSUNO; // solo per vendite, altrimenti NESSUNO (null su db)
+    
+    @Column
+    @Convert(converter = CentesimiConverter.class)
+    private long prezzoLimite = Denaro.NESSUNO; // solo per ordini limite
+    
+    @Column
+    private Long riferimento; // identificativo dell'ordine limite nel giornale
     
     // Costruttore vuoto
     public Ordine() {}
     
     // Costruttore con parametri
     public Ordine(Utente utente, TipoOrdine tipo, String ticker, int quantita, 
-                  double prezzoEsecuzione, LocalDate data, StatoOrdine stato) {
+                  long prezzoEsecuzione, LocalDate data, StatoOrdine stato) {
         this.utente = utente;
         this.tipo = tipo;
         this.ticker = ticker;
@@ -98,11 +110,11 @@ public class Ordine {
         this.quantita = quantita;
     }
     
-    public double getPrezzoEsecuzione() {
+    public long getPrezzoEsecuzione() {
         return prezzoEsecuzione;
     }
     
-    public void setPrezzoEsecuzione(double prezzoEsecuzione) {
+    public void setPrezzoEsecuzione(long prezzoEsecuzione) {
         this.prezzoEsecuzione = prezzoEsecuzione;
     }
     
@@ -122,14 +134,30 @@ public class Ordine {
         this.stato = stato;
     }
     
-    public Double getPnlRealizzato() {
+    public long getPnlRealizzato() {
         return pnlRealizzato;
     }
     
-    public void setPnlRealizzato(Double pnlRealizzato) {
+    public void setPnlRealizzato(long pnlRealizzato) {
         this.pnlRealizzato = pnlRealizzato;
     }
     
+    public long getPrezzoLimite() {
+        return prezzoLimite;
+    }
+    
+    public void setPrezzoLimite(long prezzoLimite) {
+        this.prezzoLimite = prezzoLimite;
+    }
+    
+    public Long getRiferimento() {
+        return riferimento;
+    }
+    
+    public void setRiferimento(Long riferimento) {
+        this.riferimento = riferimento;
+    }
+    
     @Override
     public String toString() {
         return "Ordine{" +
@@ -142,6 +170,7 @@ public class Ordine {
                 ", data=" + data +
                 ", stato=" + stato +
                 ", pnlRealizzato=" + pnlRealizzato +
+                ", prezzoLimite=" + prezzoLimite +
                 '}';
     }
 }
@@ -25,13 +25,23 @@ public class Posizione {
     private int quantita;
     
     @Column(nullable = false)
-    private double prezzoMedio;
+    @Convert(converter = CentesimiConverter.class)
+    private long prezzoMedio;
+    
+    // Soglie di vendita automatica (Denaro.NESSUNO = non impostata)
+    @Column
+    @Convert(converter = CentesimiConverter.class)
+    private long stopLoss = Denaro.NESSUNO;
+    
+    @Column
+    @Convert(converter = CentesimiConverter.class)
+    private long takeProfit = Denaro.NESSUNO;
     
     // Costruttore vuoto
     public Posizione() {}
     
     // Costruttore con parametri
-    public Posizione(Utente utente, Strumento strumento, int quantita, double prezzoMedio) {
+    public Posizione(Utente utente, Strumento strumento, int quantita, long prezzoMedio) {
         this.utente = utente;
         this.strumento = strumento;
         this.quantita = quantita;
@@ -41,15 +51,15 @@ public class Posizione {
     /**
      * Calcola il valore di mercato della posizione
      */
-    public double getValoreMercato() {
-        return quantita * strumento.getPrezzoCorrente();
+    public long getValoreMercato() {
+        return Denaro.controvalore(strumento.getPrezzoCorrente(), quantita);
     }
     
     /**
      * Calcola il P&L non realizzato della posizione
      */
-    public double getPnlNonRealizzato() {
-        return (strumento.getPrezzoCorrente() - prezzoMedio) * quantita;
+    public long getPnlNonRealizzato() {
+        return Denaro.pnl(strumento.getPrezzoCorrente(), prezzoMedio, quantita);
     }
     
     // Getters e Setters
@@ -85,14 +95,30 @@ public class Posizione {
         this.quantita = quantita;
     }
     
-    public double getPrezzoMedio() {
+    public long getPrezzoMedio() {
         return prezzoMedio;
     }
     
-    public void setPrezzoMedio(double prezzoMedio) {
+    public void setPrezzoMedio(long prezzoMedio) {
         this.prezzoMedio = prezzoMedio;
     }
     
+    public long getStopLoss() {
+        return stopLoss;
+    }
+    
+    public void setStopLoss(long stopLoss) {
+        this.stopLoss = stopLoss;
+    }
+    
+    public long getTakeProfit() {
+        return takeProfit;
+    }
+    
+    public void setTakeProfit(long takeProfit) {
+        this.takeProfit = takeProfit;
+    }
+    
     @Override
     public String toString() {
         return "Posizione{" +
@@ -101,6 +127,8 @@ public class Posizione {
                 ", strumento=" + (strumento != null ? strumento.getTicker() : "null") +
                 ", quantita=" + quantita +
                 ", prezzoMedio=" + prezzoMedio +
+                ", stopLoss=" + stopLoss +
+                ", takeProfit=" + takeProfit +
                 '}';
     }
 }
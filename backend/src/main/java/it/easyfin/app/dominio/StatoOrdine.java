@@ -4,5 +4,7 @@ package it.easyfin.app.dominio;
  * Enum per lo stato degli ordini
  */
 public enum StatoOrdine {
-    ESEGUITO
+    ESEGUITO,
+    IN_ATTESA,  // ordine limite nel libro, non ancora eseguito
+    ANNULLATO
 }
@@ -17,13 +17,14 @@ public class Strumento {
     private String nome;
     
     @Column(nullable = false)
-    private double prezzoCorrente;
+    @Convert(converter = CentesimiConverter.class)
+    private long prezzoCorrente;
     
     // Costruttore vuoto
     public Strumento() {}
     
     // Costruttore con parametri
-    public Strumento(String ticker, String nome, double prezzoCorrente) {
+    public Strumento(String ticker, String nome, long prezzoCorrente) {
         this.ticker = ticker;
         this.nome = nome;
         this.prezzoCorrente = prezzoCorrente;
@@ -46,11 +47,11 @@ public class Strumento {
         this.nome = nome;
     }
     
-    public double getPrezzoCorrente() {
+    public long getPrezzoCorrente() {
         return prezzoCorrente;
     }
     
-    public void setPrezzoCorrente(double prezzoCorrente) {
+    public void setPrezzoCorrente(long prezzoCorrente) {
         this.prezzoCorrente = prezzoCorrente;
     }
     
@@ -0,0 +1,23 @@
+package it.easyfin.app.dto;
+
+import java.util.List;
+
+/**
+ * DTO per un evento del flusso quotazioni
+ *
+ * Se completo è false contiene solo gli strumenti variati rispetto
+ * alla versione precedente del listino.
+ */
+public class AggiornamentoQuotazioniDto {
+    public long versione;
+    public boolean completo;
+    public List<QuotazioneDto> quotazioni;
+
+    public AggiornamentoQuotazioniDto() {}
+
+    public AggiornamentoQuotazioniDto(long versione, boolean completo, List<QuotazioneDto> quotazioni) {
+        this.versione = versione;
+        this.completo = completo;
+        this.quotazioni = quotazioni;
+    }
+}
@@ -0,0 +1,26 @@
+package it.easyfin.app.dto;
+
+/**
+ * DTO per una candela OHLC
+ *
+ * inizio è l'istante di apertura dell'intervallo in millisecondi dall'epoca.
+ */
+public class CandelaDto {
+    public long inizio;
+    public double apertura;
+    public double massimo;
+    public double minimo;
+    public double chiusura;
+    public int numeroTick;
+
+    public CandelaDto() {}
+
+    public CandelaDto(long inizio, double apertura, double massimo, double minimo, double chiusura, int numeroTick) {
+        this.inizio = inizio;
+        this.apertura = apertura;
+        this.massimo = massimo;
+        this.minimo = minimo;
+        this.chiusura = chiusura;
+        this.numeroTick = numeroTick;
+    }
+}
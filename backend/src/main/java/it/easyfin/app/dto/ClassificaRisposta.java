@@ -0,0 +1,20 @@
+package it.easyfin.app.dto;
+
+import java.util.List;
+
+/**
+ * DTO per la risposta della classifica
+ */
+public class ClassificaRisposta {
+    public List<VoceClassificaDto> primi;
+    public VoceClassificaDto utente; // null se la richiesta non è autenticata
+    public int partecipanti;
+    
+    public ClassificaRisposta() {}
+    
+    public ClassificaRisposta(List<VoceClassificaDto> primi, VoceClassificaDto utente, int partecipanti) {
+        this.primi = primi;
+        this.utente = utente;
+        this.partecipanti = partecipanti;
+    }
+}
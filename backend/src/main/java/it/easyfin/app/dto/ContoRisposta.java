@@ -11,15 +11,17 @@ public class ContoRisposta {
     public List<MovimentoCassaDto> movimenti;
     public double valoreStrumenti;
     public double nav;
+    public String cursoreSuccessivo; // pagina successiva dei movimenti, null se assente
     
     public ContoRisposta() {}
     
     public ContoRisposta(String iban, double saldoContante, List<MovimentoCassaDto> movimenti, 
-                         double valoreStrumenti, double nav) {
+                         double valoreStrumenti, double nav, String cursoreSuccessivo) {
         this.iban = iban;
         this.saldoContante = saldoContante;
         this.movimenti = movimenti;
         this.valoreStrumenti = valoreStrumenti;
         this.nav = nav;
+        this.cursoreSuccessivo = cursoreSuccessivo;
     }
 }
@@ -0,0 +1,27 @@
+package it.easyfin.app.dto;
+
+/**
+ * DTO per l'esito di una gamba di un ordine batch
+ */
+public class EsitoGambaDto {
+    public int indice;
+    public String tipo;
+    public String ticker;
+    public int quantita;
+    public boolean eseguito;
+    public Double prezzoEsecuzione; // null se non eseguito
+    public String errore; // null se eseguito
+    
+    public EsitoGambaDto() {}
+    
+    public EsitoGambaDto(int indice, String tipo, String ticker, int quantita, 
+                         boolean eseguito, Double prezzoEsecuzione, String errore) {
+        this.indice = indice;
+        this.tipo = tipo;
+        this.ticker = ticker;
+        this.quantita = quantita;
+        this.eseguito = eseguito;
+        this.prezzoEsecuzione = prezzoEsecuzione;
+        this.errore = errore;
+    }
+}
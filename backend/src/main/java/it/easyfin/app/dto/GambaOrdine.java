@@ -0,0 +1,18 @@
+package it.easyfin.app.dto;
+
+/**
+ * DTO per una singola gamba di un ordine batch
+ */
+public class GambaOrdine {
+    public String tipo; // ACQUISTO o VENDITA
+    public String ticker;
+    public int quantita;
+    
+    public GambaOrdine() {}
+    
+    public GambaOrdine(String tipo, String ticker, int quantita) {
+        this.tipo = tipo;
+        this.ticker = ticker;
+        this.quantita = quantita;
+    }
+}
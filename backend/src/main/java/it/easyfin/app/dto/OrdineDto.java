@@ -12,11 +12,13 @@ public class OrdineDto {
     public String data;
     public String stato;
     public Double pnlRealizzato;
+    public Double prezzoLimite; // null per gli ordini a mercato
     
     public OrdineDto() {}
     
     public OrdineDto(Long id, String tipo, String ticker, int quantita, 
-                     double prezzoEsecuzione, String data, String stato, Double pnlRealizzato) {
+                     double prezzoEsecuzione, String data, String stato, Double pnlRealizzato,
+                     Double prezzoLimite) {
         this.id = id;
         this.tipo = tipo;
         this.ticker = ticker;
@@ -25,5 +27,6 @@ public class OrdineDto {
         this.data = data;
         this.stato = stato;
         this.pnlRealizzato = pnlRealizzato;
+        this.prezzoLimite = prezzoLimite;
     }
 }
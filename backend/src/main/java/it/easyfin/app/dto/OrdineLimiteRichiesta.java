@@ -0,0 +1,20 @@
+package it.easyfin.app.dto;
+
+/**
+ * DTO per la richiesta di un ordine limite
+ */
+public class OrdineLimiteRichiesta {
+    public String tipo; // ACQUISTO o VENDITA
+    public String ticker;
+    public int quantita;
+    public double prezzoLimite; // massimo per gli acquisti, minimo per le vendite
+    
+    public OrdineLimiteRichiesta() {}
+    
+    public OrdineLimiteRichiesta(String tipo, String ticker, int quantita, double prezzoLimite) {
+        this.tipo = tipo;
+        this.ticker = ticker;
+        this.quantita = quantita;
+        this.prezzoLimite = prezzoLimite;
+    }
+}
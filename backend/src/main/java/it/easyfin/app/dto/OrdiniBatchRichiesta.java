@@ -0,0 +1,18 @@
+package it.easyfin.app.dto;
+
+import java.util.List;
+
+/**
+ * DTO per la richiesta di ordini batch
+ */
+public class OrdiniBatchRichiesta {
+    public List<GambaOrdine> ordini;
+    public String modalita = "TUTTO_O_NIENTE"; // oppure MIGLIOR_SFORZO
+    
+    public OrdiniBatchRichiesta() {}
+    
+    public OrdiniBatchRichiesta(List<GambaOrdine> ordini, String modalita) {
+        this.ordini = ordini;
+        this.modalita = modalita;
+    }
+}
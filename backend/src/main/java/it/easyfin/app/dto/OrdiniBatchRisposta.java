@@ -0,0 +1,18 @@
+package it.easyfin.app.dto;
+
+import java.util.List;
+
+/**
+ * DTO per la risposta di un ordine batch
+ */
+public class OrdiniBatchRisposta {
+    public List<EsitoGambaDto> esiti;
+    public PortafoglioRisposta portafoglio;
+    
+    public OrdiniBatchRisposta() {}
+    
+    public OrdiniBatchRisposta(List<EsitoGambaDto> esiti, PortafoglioRisposta portafoglio) {
+        this.esiti = esiti;
+        this.portafoglio = portafoglio;
+    }
+}
@@ -0,0 +1,18 @@
+package it.easyfin.app.dto;
+
+import java.util.List;
+
+/**
+ * DTO per una pagina dello storico ordini
+ */
+public class PaginaOrdiniRisposta {
+    public List<OrdineDto> ordini;
+    public String cursoreSuccessivo; // null se non ci sono altre pagine
+    
+    public PaginaOrdiniRisposta() {}
+    
+    public PaginaOrdiniRisposta(List<OrdineDto> ordini, String cursoreSuccessivo) {
+        this.ordini = ordini;
+        this.cursoreSuccessivo = cursoreSuccessivo;
+    }
+}
@@ -0,0 +1,16 @@
+package it.easyfin.app.dto;
+
+/**
+ * DTO per il prezzo corrente di uno strumento
+ */
+public class QuotazioneDto {
+    public String ticker;
+    public double prezzoCorrente;
+
+    public QuotazioneDto() {}
+
+    public QuotazioneDto(String ticker, double prezzoCorrente) {
+        this.ticker = ticker;
+        this.prezzoCorrente = prezzoCorrente;
+    }
+}
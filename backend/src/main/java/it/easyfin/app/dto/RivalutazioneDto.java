@@ -0,0 +1,20 @@
+package it.easyfin.app.dto;
+
+/**
+ * DTO per i totali di sistema dell'ultima rivalutazione dei conti
+ */
+public class RivalutazioneDto {
+    public long versioneListino;
+    public int utenti;
+    public double navTotale;
+    public double pnlNonRealizzatoTotale;
+    
+    public RivalutazioneDto() {}
+    
+    public RivalutazioneDto(long versioneListino, int utenti, double navTotale, double pnlNonRealizzatoTotale) {
+        this.versioneListino = versioneListino;
+        this.utenti = utenti;
+        this.navTotale = navTotale;
+        this.pnlNonRealizzatoTotale = pnlNonRealizzatoTotale;
+    }
+}
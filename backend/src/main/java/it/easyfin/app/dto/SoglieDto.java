@@ -0,0 +1,18 @@
+package it.easyfin.app.dto;
+
+/**
+ * DTO per le soglie di stop-loss e take-profit di una posizione
+ */
+public class SoglieDto {
+    public String ticker;
+    public Double stopLoss;
+    public Double takeProfit;
+    
+    public SoglieDto() {}
+    
+    public SoglieDto(String ticker, Double stopLoss, Double takeProfit) {
+        this.ticker = ticker;
+        this.stopLoss = stopLoss;
+        this.takeProfit = takeProfit;
+    }
+}
@@ -0,0 +1,16 @@
+package it.easyfin.app.dto;
+
+/**
+ * DTO per la richiesta di impostazione delle soglie di una posizione
+ */
+public class SoglieRichiesta {
+    public Double stopLoss;   // null = nessuno stop-loss
+    public Double takeProfit; // null = nessun take-profit
+    
+    public SoglieRichiesta() {}
+    
+    public SoglieRichiesta(Double stopLoss, Double takeProfit) {
+        this.stopLoss = stopLoss;
+        this.takeProfit = takeProfit;
+    }
+}
@@ -0,0 +1,20 @@
+package it.easyfin.app.dto;
+
+/**
+ * DTO per una voce della classifica
+ */
+public class VoceClassificaDto {
+    public int posizione;
+    public String nome;
+    public double nav;
+    public double rendimentoPercentuale; // sul saldo iniziale del conto
+    
+    public VoceClassificaDto() {}
+    
+    public VoceClassificaDto(int posizione, String nome, double nav, double rendimentoPercentuale) {
+        this.posizione = posizione;
+        this.nome = nome;
+        this.nav = nav;
+        this.rendimentoPercentuale = rendimentoPercentuale;
+    }
+}
@@ -0,0 +1,173 @@
+package it.easyfin.app.inizializzazione;
+
+import it.easyfin.app.dominio.Denaro;
+import it.easyfin.app.servizio.ServizioQuotazioni;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Caricamento dell'universo degli strumenti all'avvio
+ *
+ * Il file viene letto in streaming, un record alla volta: le righe per il
+ * database sono accumulate fino alla dimensione del batch e scritte con un
+ * unico batch JDBC, così la memoria usata dalla lettura non cresce con il
+ * file. Nello stesso passaggio si riempiono gli array del listino, che a
+ * fine file viene caricato in memoria senza rileggere il database.
+ *
+ * Formati supportati, scelti dall'estensione:
+ * - CSV: ticker,nome,prezzo in euro (il nome può contenere virgole;
+ *   intestazione, righe vuote e righe che iniziano con # vengono ignorate)
+ * - binario (.bin): intero magico "EFS1", numero di record, poi per ogni
+ *   record ticker e nome in UTF modificato e prezzo in centesimi (long)
+ */
+@Component
+public class CaricatoreStrumenti {
+
+    /** Intestazione dei file binari: "EFS1" */
+    public static final int MAGICO_BINARIO = 0x45465331;
+
+    private static final String INSERISCI =
+        "insert into strumenti (ticker, nome, prezzo_corrente) values (?, ?, ?)";
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ServizioQuotazioni servizioQuotazioni;
+
+    @Value("${easyfin.strumenti.file:classpath:strumenti.csv}")
+    private String file;
+
+    @Value("${easyfin.strumenti.batch:1000}")
+    private int dimensioneBatch;
+
+    /**
+     * Legge il file configurato, scrive gli strumenti sul database e carica il listino
+     *
+     * @return numero di strumenti caricati
+     */
+    public int carica() {
+        Resource risorsa = resourceLoader.getResource(file);
+        Accumulo accumulo = new Accumulo();
+        try (InputStream ingresso = new BufferedInputStream(risorsa.getInputStream(), 1 << 16)) {
+            if (file.endsWith(".bin")) {
+                leggiBinario(ingresso, accumulo);
+            } else {
+                leggiCsv(ingresso, accumulo);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lettura degli strumenti da " + file + " non riuscita", e);
+        }
+        accumulo.scrivi();
+
+        int n = accumulo.numero;
+        servizioQuotazioni.caricaListino(Arrays.copyOf(accumulo.ticker, n), Arrays.copyOf(accumulo.nomi, n),
+                                         Arrays.copyOf(accumulo.prezzi, n));
+        return n;
+    }
+
+    private void leggiCsv(InputStream ingresso, Accumulo accumulo) throws IOException {
+        BufferedReader lettore = new BufferedReader(new InputStreamReader(ingresso, StandardCharsets.UTF_8));
+        String riga;
+        int numeroRiga = 0;
+        while ((riga = lettore.readLine()) != null) {
+            numeroRiga++;
+            riga = riga.strip();
+            if (riga.isEmpty() || riga.startsWith("#")
+                    || (numeroRiga == 1 && riga.regionMatches(true, 0, "ticker", 0, 6))) {
+                continue;
+            }
+            int primaVirgola = riga.indexOf(',');
+            int ultimaVirgola = riga.lastIndexOf(',');
+            if (primaVirgola <= 0 || ultimaVirgola == primaVirgola) {
+                throw new IllegalStateException("Riga " + numeroRiga + " di " + file + " non valida: " + riga);
+            }
+            long prezzo;
+            try {
+                prezzo = new BigDecimal(riga.substring(ultimaVirgola + 1).strip())
+                    .setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            } catch (ArithmeticException | NumberFormatException e) {
+                throw new IllegalStateException("Prezzo non valido alla riga " + numeroRiga + " di " + file, e);
+            }
+            accumulo.aggiungi(riga.substring(0, primaVirgola).strip(),
+                              riga.substring(primaVirgola + 1, ultimaVirgola).strip(), prezzo);
+        }
+    }
+
+    private void leggiBinario(InputStream ingresso, Accumulo accumulo) throws IOException {
+        DataInputStream dati = new DataInputStream(ingresso);
+        if (dati.readInt() != MAGICO_BINARIO) {
+            throw new IllegalStateException(file + " non è un file binario di strumenti");
+        }
+        int numero = dati.readInt();
+        accumulo.riserva(numero);
+        for (int i = 0; i < numero; i++) {
+            accumulo.aggiungi(dati.readUTF(), dati.readUTF(), dati.readLong());
+        }
+    }
+
+    /**
+     * Colonne del listino in costruzione e batch corrente di righe per il database
+     */
+    private final class Accumulo {
+
+        String[] ticker = new String[1024];
+        String[] nomi = new String[1024];
+        long[] prezzi = new long[1024];
+        int numero;
+
+        final List<Object[]> batch = new ArrayList<>(dimensioneBatch);
+
+        void riserva(int capacita) {
+            if (capacita > ticker.length) {
+                ticker = Arrays.copyOf(ticker, capacita);
+                nomi = Arrays.copyOf(nomi, capacita);
+                prezzi = Arrays.copyOf(prezzi, capacita);
+            }
+        }
+
+        void aggiungi(String tickerStrumento, String nome, long prezzo) {
+            if (numero == ticker.length) {
+                riserva(numero * 2);
+            }
+            ticker[numero] = tickerStrumento;
+            nomi[numero] = nome;
+            prezzi[numero] = prezzo;
+            numero++;
+
+            // Colonna prezzo_corrente in euro, come scritta da CentesimiConverter
+            batch.add(new Object[]{tickerStrumento, nome, Denaro.inEuro(prezzo)});
+            if (batch.size() >= dimensioneBatch) {
+                scrivi();
+            }
+        }
+
+        void scrivi() {
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERISCI, batch);
+                batch.clear();
+            }
+        }
+    }
+}
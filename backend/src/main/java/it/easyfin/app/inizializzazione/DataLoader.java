@@ -1,7 +1,10 @@
 package it.easyfin.app.inizializzazione;
 
-import it.easyfin.app.dominio.Strumento;
 import it.easyfin.app.repository.StrumentoRepository;
+import it.easyfin.app.servizio.MotoreOrdini;
+import it.easyfin.app.servizio.ServizioGiornale;
+import it.easyfin.app.servizio.ServizioQuotazioni;
+import it.easyfin.app.servizio.ServizioRivalutazione;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
@@ -15,35 +18,49 @@ public class DataLoader implements CommandLineRunner {
     @Autowired
     private StrumentoRepository strumentoRepository;
     
+    @Autowired
+    private ServizioQuotazioni servizioQuotazioni;
+    
+    @Autowired
+    private CaricatoreStrumenti caricatoreStrumenti;
+    
+    @Autowired
+    private ServizioGiornale servizioGiornale;
+    
+    @Autowired
+    private MotoreOrdini motoreOrdini;
+    
+    @Autowired
+    private ServizioRivalutazione servizioRivalutazione;
+    
     @Override
     public void run(String... args) throws Exception {
-        // Verifica se gli strumenti sono già presenti
-        if (strumentoRepository.count() > 0) {
-            return; // Dati già caricati
+        // Carica strumenti iniziali solo se non sono già presenti; il listino si popola nello stesso passaggio
+        boolean listinoCaricato = false;
+        if (strumentoRepository.count() == 0) {
+            int strumenti = caricatoreStrumenti.carica();
+            listinoCaricato = true;
+            System.out.println("📊 Strumenti finanziari caricati: " + strumenti);
         }
         
-        // Carica strumenti iniziali
-        caricaStrumenti();
+        // Ricostruisce utenti, ordini e posizioni dal giornale
+        int voci = servizioGiornale.ripristina();
+        if (voci > 0) {
+            System.out.println("📒 Giornale ordini riletto: " + voci + " voci");
+        }
         
-        System.out.println("📊 Strumenti finanziari caricati: " + strumentoRepository.count());
-    }
-    
-    /**
-     * Carica gli strumenti finanziari predefiniti
-     */
-    private void caricaStrumenti() {
-        Strumento[] strumenti = {
-            new Strumento("GOOGL", "Alphabet Inc.", 140.00),
-            new Strumento("AAPL", "Apple Inc.", 185.00),
-            new Strumento("MSFT", "Microsoft Corporation", 410.00),
-            new Strumento("AMZN", "Amazon.com Inc.", 155.00),
-            new Strumento("NVDA", "NVIDIA Corporation", 450.00),
-            new Strumento("META", "Meta Platforms Inc.", 320.00),
-            new Strumento("TSLA", "Tesla Inc.", 220.00)
-        };
+        // Popola il listino prezzi in memoria dagli strumenti già presenti nel database
+        if (!listinoCaricato) {
+            servizioQuotazioni.caricaListino();
+        }
+        
+        // Saldi e posizioni di tutti gli utenti per la rivalutazione dopo ogni tick
+        servizioRivalutazione.carica();
         
-        for (Strumento strumento : strumenti) {
-            strumentoRepository.save(strumento);
+        // Rimette nel libro gli ordini limite in attesa
+        int inAttesa = motoreOrdini.caricaLibro();
+        if (inAttesa > 0) {
+            System.out.println("📖 Ordini limite in attesa: " + inAttesa);
         }
     }
 }
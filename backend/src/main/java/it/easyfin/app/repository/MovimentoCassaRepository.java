@@ -1,12 +1,34 @@
 package it.easyfin.app.repository;
 
 import it.easyfin.app.dominio.MovimentoCassa;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.List;
+
 /**
  * Repository per la gestione dei movimenti di cassa
  */
 @Repository
 public interface MovimentoCassaRepository extends JpaRepository<MovimentoCassa, Long> {
+    
+    /**
+     * Prima pagina dei movimenti di un conto, dal più recente
+     */
+    List<MovimentoCassa> findByConto_IdOrderByDataDescIdDesc(Long contoId, Limit limite);
+    
+    /**
+     * Pagina dei movimenti successiva al cursore (data, id), dal più recente
+     */
+    @Query("select m from MovimentoCassa m where m.conto.id = :contoId " +
+           "and (m.data < :data or (m.data = :data and m.id < :id)) " +
+           "order by m.data desc, m.id desc")
+    List<MovimentoCassa> findPaginaDopo(@Param("contoId") Long contoId,
+                                        @Param("data") LocalDate data,
+                                        @Param("id") Long id,
+                                        Limit limite);
 }
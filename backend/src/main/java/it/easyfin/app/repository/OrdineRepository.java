@@ -1,11 +1,18 @@
 package it.easyfin.app.repository;
 
 import it.easyfin.app.dominio.Ordine;
-import it.easyfin.app.dominio.Utente;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Repository per la gestione degli ordini
@@ -14,7 +21,37 @@ import java.util.List;
 public interface OrdineRepository extends JpaRepository<Ordine, Long> {
     
     /**
-     * Trova tutti gli ordini di un utente ordinati per data decrescente
+     * Prima pagina dello storico di un utente, dal più recente
      */
-    List<Ordine> findByUtenteOrderByDataDesc(Utente utente);
+    List<Ordine> findByUtente_IdOrderByDataDescIdDesc(Long utenteId, Limit limite);
+    
+    /**
+     * Pagina dello storico successiva al cursore (data, id), dal più recente
+     */
+    @Query("select o from Ordine o where o.utente.id = :utenteId " +
+           "and (o.data < :data or (o.data = :data and o.id < :id)) " +
+           "order by o.data desc, o.id desc")
+    List<Ordine> findPaginaDopo(@Param("utenteId") Long utenteId,
+                                @Param("data") LocalDate data,
+                                @Param("id") Long id,
+                                Limit limite);
+    
+    /**
+     * Intero storico di un utente come stream, dal più recente
+     * 
+     * Va consumato all'interno di una transazione e chiuso al termine.
+     */
+    @QueryHints({
+        @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "256"),
+        @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select o from Ordine o where o.utente.id = :utenteId order by o.data desc, o.id desc")
+    Stream<Ordine> streamStorico(@Param("utenteId") Long utenteId);
+    
+    /**
+     * Ordini limite in attesa, con utente e conto
+     */
+    @Query("select o from Ordine o join fetch o.utente u join fetch u.conto " +
+           "where o.stato = it.easyfin.app.dominio.StatoOrdine.IN_ATTESA")
+    List<Ordine> findInAttesa();
 }
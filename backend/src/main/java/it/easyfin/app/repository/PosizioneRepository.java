@@ -3,6 +3,7 @@ package it.easyfin.app.repository;
 import it.easyfin.app.dominio.Posizione;
 import it.easyfin.app.dominio.Utente;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -23,4 +24,11 @@ public interface PosizioneRepository extends JpaRepository<Posizione, Long> {
      * Trova tutte le posizioni di un utente
      */
     List<Posizione> findByUtente(Utente utente);
+    
+    /**
+     * Posizioni con almeno una soglia impostata, con utente e conto
+     */
+    @Query("select p from Posizione p join fetch p.utente u join fetch u.conto " +
+           "where p.stopLoss is not null or p.takeProfit is not null")
+    List<Posizione> findConSoglie();
 }
@@ -2,7 +2,11 @@ package it.easyfin.app.repository;
 
 import it.easyfin.app.dominio.Utente;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -21,4 +25,12 @@ public interface UtenteRepository extends JpaRepository<Utente, Long> {
      * Verifica se esiste un utente con l'email specificata
      */
     boolean existsByEmail(String email);
+    
+    /**
+     * Sostituisce la password memorizzata senza toccare il conto
+     */
+    @Transactional
+    @Modifying
+    @Query("update Utente u set u.password = :password where u.id = :id")
+    int aggiornaPassword(@Param("id") Long id, @Param("password") String password);
 }
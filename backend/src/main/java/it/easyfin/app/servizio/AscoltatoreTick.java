@@ -0,0 +1,14 @@
+package it.easyfin.app.servizio;
+
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+
+/**
+ * Ascoltatore notificato dopo la pubblicazione di ogni nuovo listino
+ *
+ * Viene invocato nel thread che ha eseguito il tick: le implementazioni
+ * devono restituire il controllo rapidamente e non sollevare eccezioni.
+ */
+public interface AscoltatoreTick {
+
+    void dopoTick(Istantanea precedente, Istantanea nuovo);
+}
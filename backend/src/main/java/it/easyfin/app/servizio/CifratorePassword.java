@@ -0,0 +1,204 @@
+package it.easyfin.app.servizio;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.easyfin.app.config.FabbricaThread;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cifratura e verifica delle password con PBKDF2-HMAC-SHA256
+ *
+ * Il calcolo avviene su un pool dedicato di thread di piattaforma con coda
+ * limitata: durante un picco di login le richieste in eccesso vengono
+ * respinte subito con 503 e i thread delle richieste di trading non
+ * consumano CPU per l'hash. Il costo (iterazioni) è scritto nella password
+ * cifrata, quindi può essere alzato senza invalidare quelle esistenti.
+ */
+@Component
+public class CifratorePassword {
+
+    private static final String ALGORITMO = "PBKDF2WithHmacSHA256";
+    private static final String PREFISSO = "pbkdf2-sha256";
+    private static final int BYTE_SALE = 16;
+    private static final int BIT_CHIAVE = 256;
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Autowired
+    private FabbricaThread fabbricaThread;
+
+    @Autowired
+    private MeterRegistry registro;
+
+    @Value("${easyfin.password.iterazioni:120000}")
+    private int iterazioni;
+
+    @Value("${easyfin.password.thread:2}")
+    private int thread;
+
+    @Value("${easyfin.password.coda-massima:32}")
+    private int codaMassima;
+
+    @Value("${easyfin.password.timeout-ms:5000}")
+    private long timeoutMs;
+
+    private ThreadPoolExecutor esecutore;
+    private Timer attesa;
+    private Timer calcolo;
+    private Counter rifiutatePerCoda;
+    private Counter rifiutatePerTimeout;
+
+    @PostConstruct
+    void avvia() {
+        esecutore = new ThreadPoolExecutor(thread, thread, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(codaMassima),
+            fabbricaThread.piattaforma("password"),
+            new ThreadPoolExecutor.AbortPolicy());
+
+        attesa = Timer.builder("easyfin.password.attesa")
+            .description("Attesa in coda prima del calcolo dell'hash")
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofNanos(10_000))
+            .maximumExpectedValue(Duration.ofSeconds(10))
+            .register(registro);
+        calcolo = Timer.builder("easyfin.password.calcolo")
+            .description("Durata del calcolo dell'hash di una password")
+            .publishPercentileHistogram()
+            .register(registro);
+        rifiutatePerCoda = Counter.builder("easyfin.password.rifiutate")
+            .description("Richieste di cifratura respinte")
+            .tag("motivo", "coda")
+            .register(registro);
+        rifiutatePerTimeout = Counter.builder("easyfin.password.rifiutate")
+            .description("Richieste di cifratura respinte")
+            .tag("motivo", "timeout")
+            .register(registro);
+        Gauge.builder("easyfin.password.coda", esecutore, e -> e.getQueue().size())
+            .description("Richieste di cifratura in coda")
+            .register(registro);
+    }
+
+    @PreDestroy
+    void arresta() {
+        esecutore.shutdownNow();
+    }
+
+    /**
+     * Cifra una password con sale casuale e il costo configurato
+     *
+     * @return la password cifrata nel formato pbkdf2-sha256$iterazioni$sale$hash
+     */
+    public String cifra(String password) {
+        byte[] sale = new byte[BYTE_SALE];
+        random.nextBytes(sale);
+        int costo = iterazioni;
+        byte[] hash = esegui(() -> deriva(password, sale, costo));
+
+        Base64.Encoder codifica = Base64.getEncoder().withoutPadding();
+        return PREFISSO + "$" + costo + "$" + codifica.encodeToString(sale) + "$" + codifica.encodeToString(hash);
+    }
+
+    /**
+     * Verifica una password contro quella memorizzata
+     *
+     * Le password salvate in chiaro prima dell'introduzione dell'hash
+     * vengono confrontate direttamente.
+     */
+    public boolean verifica(String password, String memorizzata) {
+        if (inChiaro(memorizzata)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                memorizzata.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String[] parti = memorizzata.split("\\$");
+        if (parti.length != 4) {
+            return false;
+        }
+        int costo = Integer.parseInt(parti[1]);
+        Base64.Decoder decodifica = Base64.getDecoder();
+        byte[] sale = decodifica.decode(parti[2]);
+        byte[] atteso = decodifica.decode(parti[3]);
+
+        byte[] calcolato = esegui(() -> deriva(password, sale, costo));
+        return MessageDigest.isEqual(calcolato, atteso);
+    }
+
+    /**
+     * Indica se la password memorizzata è ancora in chiaro e va cifrata
+     */
+    public boolean inChiaro(String memorizzata) {
+        return !memorizzata.startsWith(PREFISSO + "$");
+    }
+
+    /**
+     * Esegue un calcolo sul pool dedicato e ne attende il risultato
+     */
+    private byte[] esegui(Callable<byte[]> lavoro) {
+        long accodato = System.nanoTime();
+        Future<byte[]> risultato;
+        try {
+            risultato = esecutore.submit(() -> {
+                long inizio = System.nanoTime();
+                attesa.record(inizio - accodato, TimeUnit.NANOSECONDS);
+                try {
+                    return lavoro.call();
+                } finally {
+                    calcolo.record(System.nanoTime() - inizio, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rifiutatePerCoda.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Troppe richieste di accesso in corso, riprova tra poco");
+        }
+
+        try {
+            return risultato.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            risultato.cancel(true);
+            rifiutatePerTimeout.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Troppe richieste di accesso in corso, riprova tra poco");
+        } catch (InterruptedException e) {
+            risultato.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Richiesta interrotta");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Calcolo dell'hash della password non riuscito", e.getCause());
+        }
+    }
+
+    private static byte[] deriva(String password, byte[] sale, int costo) throws GeneralSecurityException {
+        PBEKeySpec specifica = new PBEKeySpec(password.toCharArray(), sale, costo, BIT_CHIAVE);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITMO).generateSecret(specifica).getEncoded();
+        } finally {
+            specifica.clearPassword();
+        }
+    }
+}
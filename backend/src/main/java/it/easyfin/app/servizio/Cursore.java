@@ -0,0 +1,62 @@
+package it.easyfin.app.servizio;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Cursore per la paginazione a chiave su (data, id)
+ * 
+ * Formato testuale: "2025-01-31_42", cioè data e id dell'ultimo elemento
+ * della pagina precedente.
+ */
+final class Cursore {
+    
+    // Numero massimo di elementi per pagina nelle letture paginate
+    static final int LIMITE_MASSIMO_PAGINA = 500;
+    
+    final LocalDate data;
+    final Long id;
+    
+    private Cursore(LocalDate data, Long id) {
+        this.data = data;
+        this.id = id;
+    }
+    
+    /**
+     * Legge un cursore ricevuto dal client
+     */
+    static Cursore leggi(String testo) {
+        int separatore = testo.lastIndexOf('_');
+        if (separatore <= 0 || separatore == testo.length() - 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursore non valido");
+        }
+        
+        try {
+            LocalDate data = LocalDate.parse(testo.substring(0, separatore));
+            long id = Long.parseLong(testo.substring(separatore + 1));
+            return new Cursore(data, id);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursore non valido");
+        }
+    }
+    
+    /**
+     * Verifica il numero di elementi richiesto per una pagina
+     */
+    static void verificaLimite(int limite) {
+        if (limite < 1 || limite > LIMITE_MASSIMO_PAGINA) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                String.format("Limite non valido (1-%d)", LIMITE_MASSIMO_PAGINA));
+        }
+    }
+    
+    /**
+     * Scrive il cursore dell'ultimo elemento di una pagina
+     */
+    static String scrivi(LocalDate data, Long id) {
+        return data + "_" + id;
+    }
+}
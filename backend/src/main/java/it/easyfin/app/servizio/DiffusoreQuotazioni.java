@@ -0,0 +1,260 @@
+package it.easyfin.app.servizio;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.easyfin.app.archivio.ArchivioPrezzi;
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import it.easyfin.app.config.FabbricaThread;
+import it.easyfin.app.dominio.Denaro;
+import it.easyfin.app.dto.AggiornamentoQuotazioniDto;
+import it.easyfin.app.dto.QuotazioneDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Diffusione delle quotazioni in tempo reale via Server-Sent Events
+ *
+ * A ogni tick l'evento con le sole variazioni viene serializzato una volta
+ * e condiviso da tutti gli abbonati. Ogni abbonato ha al massimo un invio
+ * in corso e nessuna coda: un client lento, quando torna libero, riceve
+ * direttamente l'ultimo listino completo al posto dei delta persi.
+ */
+@Component
+public class DiffusoreQuotazioni implements AscoltatoreTick {
+
+    private static final String NOME_EVENTO = "quotazioni";
+
+    @Autowired
+    private ArchivioPrezzi archivioPrezzi;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private FabbricaThread fabbricaThread;
+
+    @Value("${easyfin.quotazioni.stream.massimo-abbonati:1000}")
+    private int massimoAbbonati;
+
+    @Value("${easyfin.quotazioni.stream.thread-invio:2}")
+    private int threadInvio;
+
+    @Value("${easyfin.quotazioni.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    private final Set<Abbonato> abbonati = ConcurrentHashMap.newKeySet();
+
+    private final AtomicReference<Pacchetto> ultimo = new AtomicReference<>();
+
+    private ThreadPoolExecutor esecutore;
+
+    @PostConstruct
+    void avvia() {
+        // Ogni abbonato ha al più un invio in coda: la coda è limitata dal numero di abbonati.
+        // Con i thread virtuali un client lento blocca solo il proprio thread, non uno del pool
+        int thread = fabbricaThread.isVirtuali() ? Math.max(threadInvio, massimoAbbonati) : threadInvio;
+        esecutore = new ThreadPoolExecutor(thread, thread, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            fabbricaThread.fabbrica("sse-quotazioni"));
+    }
+
+    @PreDestroy
+    void arresta() {
+        esecutore.shutdownNow();
+        for (Abbonato abbonato : abbonati) {
+            abbonato.emitter.complete();
+        }
+        abbonati.clear();
+    }
+
+    /**
+     * Registra un nuovo abbonato al flusso e gli invia il listino completo
+     */
+    public SseEmitter iscrivi() {
+        if (abbonati.size() >= massimoAbbonati) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Troppi client collegati al flusso quotazioni, riprova più tardi");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Abbonato abbonato = new Abbonato(emitter);
+        emitter.onCompletion(() -> abbonati.remove(abbonato));
+        emitter.onError(e -> abbonati.remove(abbonato));
+        emitter.onTimeout(() -> {
+            abbonati.remove(abbonato);
+            emitter.complete();
+        });
+
+        abbonati.add(abbonato);
+        pianifica(abbonato);
+        return emitter;
+    }
+
+    /**
+     * Numero di client collegati al flusso
+     */
+    public int contaAbbonati() {
+        return abbonati.size();
+    }
+
+    @Override
+    public void dopoTick(Istantanea precedente, Istantanea nuovo) {
+        Set<DataWithMediaType> delta = null;
+        if (nuovo.stessoUniverso(precedente)) {
+            List<QuotazioneDto> variate = new ArrayList<>();
+            for (int i = 0; i < nuovo.dimensione(); i++) {
+                if (nuovo.prezzo(i) != precedente.prezzo(i)) {
+                    variate.add(new QuotazioneDto(nuovo.ticker(i), Denaro.inEuro(nuovo.prezzo(i))));
+                }
+            }
+            delta = evento(nuovo.versione(), false, variate);
+        }
+
+        pubblica(new Pacchetto(nuovo, precedente.versione(), delta));
+        for (Abbonato abbonato : abbonati) {
+            pianifica(abbonato);
+        }
+    }
+
+    /**
+     * Pacchetto dell'ultima versione del listino
+     *
+     * Se il listino è stato ricaricato senza passare da un tick viene
+     * creato un pacchetto senza delta.
+     */
+    private Pacchetto pacchettoCorrente() {
+        Pacchetto pacchetto = ultimo.get();
+        Istantanea listino = archivioPrezzi.istantanea();
+        if (pacchetto != null && pacchetto.listino.versione() >= listino.versione()) {
+            return pacchetto;
+        }
+        return pubblica(new Pacchetto(listino, -1, null));
+    }
+
+    /**
+     * Sostituisce l'ultimo pacchetto solo con una versione più recente
+     */
+    private Pacchetto pubblica(Pacchetto nuovo) {
+        return ultimo.accumulateAndGet(nuovo, (attuale, candidato) ->
+            attuale == null || candidato.listino.versione() > attuale.listino.versione() ? candidato : attuale);
+    }
+
+    private void pianifica(Abbonato abbonato) {
+        if (abbonato.inInvio.compareAndSet(false, true)) {
+            esecutore.execute(() -> invia(abbonato));
+        }
+    }
+
+    /**
+     * Invia all'abbonato le versioni mancanti finché non è allineato
+     */
+    private void invia(Abbonato abbonato) {
+        try {
+            while (true) {
+                Pacchetto pacchetto = pacchettoCorrente();
+                if (pacchetto.listino.versione() == abbonato.versioneInviata) {
+                    abbonato.inInvio.set(false);
+                    // Un tick arrivato prima del rilascio non ha potuto pianificare l'invio
+                    if (pacchettoCorrente().listino.versione() == abbonato.versioneInviata
+                            || !abbonato.inInvio.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+
+                abbonato.emitter.send(pacchetto.eventoPer(abbonato.versioneInviata));
+                abbonato.versioneInviata = pacchetto.listino.versione();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Connessione chiusa dal client: il contenitore completa l'emitter
+            abbonati.remove(abbonato);
+        }
+    }
+
+    private Set<DataWithMediaType> evento(long versione, boolean completo, List<QuotazioneDto> quotazioni) {
+        try {
+            String dati = objectMapper.writeValueAsString(
+                new AggiornamentoQuotazioniDto(versione, completo, quotazioni));
+            return SseEmitter.event()
+                .id(Long.toString(versione))
+                .name(NOME_EVENTO)
+                .data(dati)
+                .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Serializzazione delle quotazioni non riuscita", e);
+        }
+    }
+
+    /**
+     * Eventi pronti per l'invio relativi a una versione del listino
+     */
+    private final class Pacchetto {
+
+        final Istantanea listino;
+        final long versionePrecedente;
+        final Set<DataWithMediaType> delta;
+        private volatile Set<DataWithMediaType> completo;
+
+        Pacchetto(Istantanea listino, long versionePrecedente, Set<DataWithMediaType> delta) {
+            this.listino = listino;
+            this.versionePrecedente = versionePrecedente;
+            this.delta = delta;
+        }
+
+        /**
+         * Delta se l'abbonato ha la versione precedente, altrimenti il listino completo
+         */
+        Set<DataWithMediaType> eventoPer(long versioneInviata) {
+            if (delta != null && versioneInviata == versionePrecedente) {
+                return delta;
+            }
+            Set<DataWithMediaType> evento = completo;
+            if (evento == null) {
+                synchronized (this) {
+                    evento = completo;
+                    if (evento == null) {
+                        List<QuotazioneDto> quotazioni = new ArrayList<>(listino.dimensione());
+                        for (int i = 0; i < listino.dimensione(); i++) {
+                            quotazioni.add(new QuotazioneDto(listino.ticker(i), Denaro.inEuro(listino.prezzo(i))));
+                        }
+                        evento = evento(listino.versione(), true, quotazioni);
+                        completo = evento;
+                    }
+                }
+            }
+            return evento;
+        }
+    }
+
+    /**
+     * Client collegato: ultima versione inviata e flag di invio in corso
+     */
+    private static final class Abbonato {
+
+        final SseEmitter emitter;
+        final AtomicBoolean inInvio = new AtomicBoolean();
+        volatile long versioneInviata = -1;
+
+        Abbonato(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package it.easyfin.app.servizio;
+
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import it.easyfin.app.dominio.Denaro;
+import it.easyfin.app.dto.StrumentoDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codifica binaria colonnare del listino completo
+ *
+ * Formato (big-endian, media type application/vnd.easyfin.listino):
+ * - intero magico "EFL1", versione del listino (long), numero di strumenti n (int)
+ * - colonna dei prezzi: n long in centesimi, a larghezza fissa
+ * - colonna dei ticker, poi colonna dei nomi: n stringhe in UTF modificato
+ *   (lunghezza su 2 byte seguita dai byte)
+ *
+ * Il prezzo dello strumento i si trova all'offset 16 + 8 * i: un client
+ * che ha già ticker e nomi (stesso universo) può leggere solo i prezzi.
+ */
+public final class ListinoColonnare {
+
+    public static final String MEDIA_TYPE = "application/vnd.easyfin.listino";
+
+    /** Intestazione: "EFL1" */
+    public static final int MAGICO = 0x45464C31;
+
+    /** Offset della colonna dei prezzi */
+    public static final int INIZIO_PREZZI = 16;
+
+    private final long versione;
+    private final byte[] dati;
+
+    private ListinoColonnare(long versione, byte[] dati) {
+        this.versione = versione;
+        this.dati = dati;
+    }
+
+    /**
+     * Codifica l'istantanea del listino
+     */
+    public static ListinoColonnare codifica(Istantanea listino) {
+        int n = listino.dimensione();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(INIZIO_PREZZI + n * 40);
+        try (DataOutputStream uscita = new DataOutputStream(buffer)) {
+            uscita.writeInt(MAGICO);
+            uscita.writeLong(listino.versione());
+            uscita.writeInt(n);
+            for (int i = 0; i < n; i++) {
+                uscita.writeLong(listino.prezzo(i));
+            }
+            for (int i = 0; i < n; i++) {
+                uscita.writeUTF(listino.ticker(i));
+            }
+            for (int i = 0; i < n; i++) {
+                uscita.writeUTF(listino.nome(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new ListinoColonnare(listino.versione(), buffer.toByteArray());
+    }
+
+    /**
+     * Decodifica un listino colonnare negli stessi DTO della rappresentazione JSON
+     */
+    public static List<StrumentoDto> decodifica(byte[] dati) {
+        try (DataInputStream ingresso = new DataInputStream(new ByteArrayInputStream(dati))) {
+            if (ingresso.readInt() != MAGICO) {
+                throw new IllegalArgumentException("Listino colonnare non valido");
+            }
+            ingresso.readLong();
+            int n = ingresso.readInt();
+            long[] prezzi = new long[n];
+            for (int i = 0; i < n; i++) {
+                prezzi[i] = ingresso.readLong();
+            }
+            String[] ticker = new String[n];
+            for (int i = 0; i < n; i++) {
+                ticker[i] = ingresso.readUTF();
+            }
+            List<StrumentoDto> strumenti = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                strumenti.add(new StrumentoDto(ticker[i], ingresso.readUTF(), Denaro.inEuro(prezzi[i])));
+            }
+            return strumenti;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long versione() {
+        return versione;
+    }
+
+    /**
+     * Byte codificati: condivisi, da non modificare
+     */
+    public byte[] dati() {
+        return dati;
+    }
+}
@@ -0,0 +1,74 @@
+package it.easyfin.app.servizio;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.easyfin.app.dominio.TipoOrdine;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer delle fasi di esecuzione degli ordini
+ *
+ * I timer sono creati una volta sola per combinazione di tipo e fase:
+ * registrare una fase costa una lettura di System.nanoTime e un record.
+ */
+@Component
+public class MetricheOrdini {
+
+    /**
+     * Fasi consecutive di un ordine
+     */
+    public enum Fase {
+        AUTENTICAZIONE, PREZZO, POSIZIONE, PERSISTENZA
+    }
+
+    private final Timer[][] timer;
+
+    public MetricheOrdini(MeterRegistry registro) {
+        TipoOrdine[] tipi = TipoOrdine.values();
+        Fase[] fasi = Fase.values();
+        timer = new Timer[tipi.length][fasi.length];
+        for (TipoOrdine tipo : tipi) {
+            for (Fase fase : fasi) {
+                timer[tipo.ordinal()][fase.ordinal()] = Timer.builder("easyfin.ordini.fase")
+                    .description("Durata delle fasi di esecuzione di un ordine")
+                    .tag("tipo", tipo.name().toLowerCase(Locale.ROOT))
+                    .tag("fase", fase.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(10_000))
+                    .maximumExpectedValue(Duration.ofSeconds(1))
+                    .register(registro);
+            }
+        }
+    }
+
+    /**
+     * Registra la fase terminata adesso e restituisce l'inizio della successiva
+     */
+    public long registra(TipoOrdine tipo, Fase fase, long inizio) {
+        long adesso = System.nanoTime();
+        timer[tipo.ordinal()][fase.ordinal()].record(adesso - inizio, TimeUnit.NANOSECONDS);
+        return adesso;
+    }
+
+    /**
+     * Registra la fase al termine della transazione corrente, includendo flush e commit
+     */
+    public void registraAlCompletamento(TipoOrdine tipo, Fase fase, long inizio) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            registra(tipo, fase, inizio);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                registra(tipo, fase, inizio);
+            }
+        });
+    }
+}
@@ -0,0 +1,217 @@
+package it.easyfin.app.servizio;
+
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import it.easyfin.app.archivio.LibroOrdini;
+import it.easyfin.app.archivio.LibroOrdini.OrdineInAttesa;
+import it.easyfin.app.archivio.LibroSoglie;
+import it.easyfin.app.archivio.Principale;
+import it.easyfin.app.dto.AcquistoRichiesta;
+import it.easyfin.app.dto.OrdineDto;
+import it.easyfin.app.dto.OrdineLimiteRichiesta;
+import it.easyfin.app.dto.OrdiniBatchRichiesta;
+import it.easyfin.app.dto.OrdiniBatchRisposta;
+import it.easyfin.app.dto.PortafoglioRisposta;
+import it.easyfin.app.dto.SoglieDto;
+import it.easyfin.app.dto.SoglieRichiesta;
+import it.easyfin.app.dto.VenditaRichiesta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Motore di esecuzione degli ordini
+ *
+ * Instrada acquisti e vendite nella corsia del sequenziatore dell'utente,
+ * così che la lettura-verifica-scrittura di saldo e posizioni di
+ * ServizioPortafoglio non venga mai eseguita in concorrenza per lo stesso
+ * utente. La transazione viene aperta nel thread della corsia.
+ *
+ * Dopo ogni tick estrae dal libro gli ordini limite scattati sui ticker
+ * il cui prezzo è cambiato e li accoda nella corsia del rispettivo utente.
+ * Le soglie di stop-loss e take-profit attraversate vengono raggruppate
+ * per utente e vendute con un solo batch per corsia.
+ */
+@Service
+public class MotoreOrdini implements AscoltatoreTick {
+
+    private static final Logger log = LoggerFactory.getLogger(MotoreOrdini.class);
+
+    @Autowired
+    private ServizioPortafoglio servizioPortafoglio;
+
+    @Autowired
+    private ServizioQuotazioni servizioQuotazioni;
+
+    @Autowired
+    private SequenziatoreOrdini sequenziatoreOrdini;
+
+    @Autowired
+    private LibroOrdini libroOrdini;
+
+    @Autowired
+    private LibroSoglie libroSoglie;
+
+    /**
+     * Esegue un ordine di acquisto nella corsia dell'utente
+     */
+    public PortafoglioRisposta acquista(Principale principale, AcquistoRichiesta richiesta) {
+        long utenteId = principale.getUtenteId();
+        return sequenziatoreOrdini.esegui(utenteId, () -> servizioPortafoglio.acquista(principale, richiesta));
+    }
+
+    /**
+     * Esegue un ordine di vendita nella corsia dell'utente
+     */
+    public PortafoglioRisposta vendi(Principale principale, VenditaRichiesta richiesta) {
+        long utenteId = principale.getUtenteId();
+        return sequenziatoreOrdini.esegui(utenteId, () -> servizioPortafoglio.vendi(principale, richiesta));
+    }
+
+    /**
+     * Esegue un batch di ordini nella corsia dell'utente
+     */
+    public OrdiniBatchRisposta eseguiBatch(Principale principale, OrdiniBatchRichiesta richiesta) {
+        long utenteId = principale.getUtenteId();
+        return sequenziatoreOrdini.esegui(utenteId, () -> servizioPortafoglio.eseguiBatch(principale, richiesta));
+    }
+
+    /**
+     * Inserisce un ordine limite e lo esegue subito se il prezzo corrente
+     * raggiunge già il limite
+     */
+    public OrdineDto inserisciLimite(Principale principale, OrdineLimiteRichiesta richiesta) {
+        long utenteId = principale.getUtenteId();
+        OrdineDto ordine = sequenziatoreOrdini.esegui(utenteId, () -> servizioPortafoglio.inserisciLimite(principale, richiesta));
+        controlla(ordine.ticker);
+        return ordine;
+    }
+
+    /**
+     * Annulla un ordine limite in attesa nella corsia dell'utente
+     */
+    public OrdineDto annullaLimite(Principale principale, long ordineId) {
+        long utenteId = principale.getUtenteId();
+        return sequenziatoreOrdini.esegui(utenteId, () -> servizioPortafoglio.annullaLimite(principale, ordineId));
+    }
+
+    /**
+     * Imposta le soglie di una posizione e le fa scattare subito se il
+     * prezzo corrente le ha già attraversate
+     */
+    public SoglieDto impostaSoglie(Principale principale, String ticker, SoglieRichiesta richiesta) {
+        long utenteId = principale.getUtenteId();
+        SoglieDto soglie = sequenziatoreOrdini.esegui(utenteId, () -> servizioPortafoglio.impostaSoglie(principale, ticker, richiesta));
+        controlla(soglie.ticker);
+        return soglie;
+    }
+
+    /**
+     * Ricarica nel libro gli ordini limite rimasti in attesa e le soglie delle posizioni
+     *
+     * @return numero di ordini e posizioni con soglie caricati
+     */
+    public int caricaLibro() {
+        List<OrdineInAttesa> ordini = servizioPortafoglio.ordiniInAttesa();
+        for (OrdineInAttesa ordine : ordini) {
+            libroOrdini.inserisci(ordine);
+        }
+        return ordini.size() + servizioPortafoglio.caricaSoglie();
+    }
+
+    @Override
+    public void dopoTick(Istantanea precedente, Istantanea nuovo) {
+        if (libroOrdini.dimensione() == 0 && libroSoglie.dimensione() == 0) {
+            return;
+        }
+        Map<Long, List<OrdineInAttesa>> soglie = new HashMap<>();
+        boolean stessoUniverso = nuovo.stessoUniverso(precedente);
+        for (int i = 0; i < nuovo.dimensione(); i++) {
+            long prezzo = nuovo.prezzo(i);
+            if (stessoUniverso && precedente.prezzo(i) == prezzo) {
+                continue;
+            }
+            esegui(libroOrdini.scattati(nuovo.ticker(i), prezzo));
+            raggruppa(libroSoglie.scattate(nuovo.ticker(i), prezzo), soglie);
+        }
+        soglie.values().forEach(this::vendi);
+    }
+
+    /**
+     * Fa scattare ordini e soglie del ticker raggiunti dal prezzo corrente
+     */
+    private void controlla(String ticker) {
+        Istantanea listino = servizioQuotazioni.listino();
+        int ordinale = listino.ordinale(ticker);
+        if (ordinale < 0) {
+            return;
+        }
+        long prezzo = listino.prezzo(ordinale);
+        esegui(libroOrdini.scattati(ticker, prezzo));
+        Map<Long, List<OrdineInAttesa>> soglie = new HashMap<>();
+        raggruppa(libroSoglie.scattate(ticker, prezzo), soglie);
+        soglie.values().forEach(this::vendi);
+    }
+
+    private static void raggruppa(List<OrdineInAttesa> scattate, Map<Long, List<OrdineInAttesa>> perUtente) {
+        for (OrdineInAttesa soglia : scattate) {
+            perUtente.computeIfAbsent(soglia.getUtenteId(), u -> new ArrayList<>()).add(soglia);
+        }
+    }
+
+    /**
+     * Accoda nella corsia dell'utente la vendita delle sue soglie scattate
+     *
+     * Se la corsia è piena o la vendita fallisce le soglie tornano nel libro.
+     */
+    private void vendi(List<OrdineInAttesa> scattate) {
+        OrdineInAttesa prima = scattate.get(0);
+        try {
+            sequenziatoreOrdini.invia(prima.getUtenteId(), () -> {
+                try {
+                    servizioPortafoglio.eseguiSoglie(prima.getUtenteId(), prima.getContoId(), scattate);
+                } catch (RuntimeException e) {
+                    log.warn("Vendita per soglie dell'utente {} non riuscita, soglie rimesse nel libro",
+                             prima.getUtenteId(), e);
+                    scattate.forEach(libroSoglie::reinserisci);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            scattate.forEach(libroSoglie::reinserisci);
+        }
+    }
+
+    /**
+     * Accoda gli ordini scattati nelle corsie dei rispettivi utenti
+     *
+     * Un ordine che non entra nella corsia, che al momento dell'esecuzione
+     * non raggiunge più il limite o la cui esecuzione fallisce torna nel
+     * libro, dato che la sua riga resta in attesa.
+     */
+    private void esegui(List<OrdineInAttesa> scattati) {
+        for (OrdineInAttesa ordine : scattati) {
+            try {
+                sequenziatoreOrdini.invia(ordine.getUtenteId(), () -> esegui(ordine));
+            } catch (RejectedExecutionException e) {
+                libroOrdini.inserisci(ordine);
+            }
+        }
+    }
+
+    private void esegui(OrdineInAttesa ordine) {
+        try {
+            if (!servizioPortafoglio.eseguiLimite(ordine)) {
+                libroOrdini.inserisci(ordine);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Esecuzione dell'ordine limite {} non riuscita, rimesso nel libro", ordine.getOrdineId(), e);
+            libroOrdini.inserisci(ordine);
+        }
+    }
+}
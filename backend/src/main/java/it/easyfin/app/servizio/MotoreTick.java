@@ -0,0 +1,62 @@
+package it.easyfin.app.servizio;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Motore dei tick di mercato
+ *
+ * Esegue ServizioQuotazioni.eseguiTick a frequenza fissa su un thread
+ * dedicato, separato dai thread delle richieste e dallo scheduler
+ * condiviso (usato ad esempio dalla scrittura differita dei prezzi).
+ * Se un tick dura più dell'intervallo, il successivo parte subito dopo
+ * senza sovrapporsi.
+ */
+@Component
+@ConditionalOnProperty(name = "easyfin.tick.abilitato", havingValue = "true")
+public class MotoreTick {
+
+    private static final Logger log = LoggerFactory.getLogger(MotoreTick.class);
+
+    @Autowired
+    private ServizioQuotazioni servizioQuotazioni;
+
+    @Value("${easyfin.tick.intervallo-ms:1000}")
+    private long intervalloMs;
+
+    private ScheduledExecutorService esecutore;
+
+    @PostConstruct
+    void avvia() {
+        esecutore = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tick-prezzi");
+            thread.setDaemon(true);
+            return thread;
+        });
+        esecutore.scheduleAtFixedRate(this::tick, intervalloMs, intervalloMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void arresta() {
+        esecutore.shutdownNow();
+    }
+
+    private void tick() {
+        try {
+            servizioQuotazioni.eseguiTick();
+        } catch (RuntimeException e) {
+            // Un'eccezione non gestita annullerebbe i tick successivi
+            log.error("Errore durante il tick dei prezzi", e);
+        }
+    }
+}
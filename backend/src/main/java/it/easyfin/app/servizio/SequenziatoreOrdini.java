@@ -0,0 +1,121 @@
+package it.easyfin.app.servizio;
+
+import it.easyfin.app.config.ContatoreSql;
+import it.easyfin.app.config.FabbricaThread;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequenziatore degli ordini per utente
+ *
+ * Ogni utente è assegnato a una corsia fissa (utenteId modulo numero di
+ * corsie) servita da un solo thread: gli ordini dello stesso utente sono
+ * eseguiti uno alla volta e nell'ordine di arrivo, mentre utenti su
+ * corsie diverse procedono in parallelo senza contendersi alcun lock.
+ * In modalità thread virtuali ogni corsia è servita da un thread virtuale.
+ */
+@Component
+public class SequenziatoreOrdini {
+
+    @Value("${easyfin.ordini.corsie:4}")
+    private int numeroCorsie;
+
+    @Value("${easyfin.ordini.capacita-coda:1024}")
+    private int capacitaCoda;
+
+    @Autowired
+    private FabbricaThread fabbricaThread;
+
+    private ThreadPoolExecutor[] corsie;
+
+    @PostConstruct
+    void avvia() {
+        corsie = new ThreadPoolExecutor[numeroCorsie];
+        for (int i = 0; i < numeroCorsie; i++) {
+            corsie[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacitaCoda),
+                fabbricaThread.fabbrica("ordini-corsia-" + i));
+        }
+    }
+
+    @PreDestroy
+    void arresta() {
+        for (ThreadPoolExecutor corsia : corsie) {
+            corsia.shutdown();
+        }
+    }
+
+    /**
+     * Esegue un'operazione nella corsia dell'utente e ne attende il risultato
+     *
+     * Le eccezioni sollevate dall'operazione vengono rilanciate al chiamante.
+     * Le istruzioni SQL eseguite nella corsia sono contate nella richiesta.
+     */
+    public <T> T esegui(long utenteId, Callable<T> operazione) {
+        int[] contatoreSql = ContatoreSql.corrente();
+        Callable<T> conContatore = () -> {
+            ContatoreSql.imposta(contatoreSql);
+            try {
+                return operazione.call();
+            } finally {
+                ContatoreSql.imposta(null);
+            }
+        };
+
+        Future<T> risultato;
+        try {
+            risultato = corsie[corsiaPer(utenteId)].submit(conContatore);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Troppi ordini in coda, riprova più tardi");
+        }
+
+        try {
+            return risultato.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Esecuzione ordine interrotta");
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (causa instanceof Error errore) {
+                throw errore;
+            }
+            throw new IllegalStateException(causa);
+        }
+    }
+
+    /**
+     * Accoda un'operazione nella corsia dell'utente senza attenderla
+     *
+     * @throws RejectedExecutionException se la coda della corsia è piena
+     */
+    public void invia(long utenteId, Runnable operazione) {
+        corsie[corsiaPer(utenteId)].execute(operazione);
+    }
+
+    /**
+     * Numero di corsie configurate
+     */
+    public int numeroCorsie() {
+        return numeroCorsie;
+    }
+
+    private int corsiaPer(long utenteId) {
+        return (int) Math.floorMod(utenteId, (long) corsie.length);
+    }
+}
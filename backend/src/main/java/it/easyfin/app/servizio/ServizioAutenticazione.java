@@ -1,5 +1,7 @@
 package it.easyfin.app.servizio;
 
+import it.easyfin.app.archivio.Principale;
+import it.easyfin.app.archivio.VoceGiornale;
 import it.easyfin.app.dominio.Conto;
 import it.easyfin.app.dominio.Utente;
 import it.easyfin.app.dto.LoginRisposta;
@@ -7,6 +9,7 @@ import it.easyfin.app.repository.UtenteRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -25,9 +28,22 @@ public class ServizioAutenticazione {
     @Autowired
     private ServizioToken servizioToken;
     
+    @Autowired
+    private ServizioGiornale servizioGiornale;
+    
+    @Autowired
+    private CifratorePassword cifratorePassword;
+    
+    @Autowired
+    private ServizioRivalutazione servizioRivalutazione;
+    
     /**
      * Registra un nuovo utente
+     * 
+     * Fuori transazione: nessuna connessione resta occupata durante il
+     * calcolo dell'hash; il salvataggio usa la transazione del repository.
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void registra(String nome, String email, String password) {
         // Validazione campi
         if (nome == null || nome.trim().isEmpty()) {
@@ -56,8 +72,9 @@ public class ServizioAutenticazione {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Email già registrata");
         }
         
-        // Crea utente con conto
-        Utente utente = new Utente(nome, email, password);
+        // Crea utente con conto e password cifrata
+        String passwordCifrata = cifratorePassword.cifra(password);
+        Utente utente = new Utente(nome, email, passwordCifrata);
         
         // Crea conto con IBAN mock
         String iban = generaIbanMock();
@@ -66,41 +83,41 @@ public class ServizioAutenticazione {
         
         // Salva utente (cascade salva anche il conto)
         utenteRepository.save(utente);
+        servizioGiornale.annota(VoceGiornale.registrazione(utente.getId(), conto.getId(), nome, email, 
+            passwordCifrata, iban, conto.getSaldoContante()));
+        servizioRivalutazione.registra(utente.getId(), conto.getSaldoContante());
     }
     
     /**
      * Effettua il login di un utente
+     * 
+     * Fuori transazione, come la registrazione.
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public LoginRisposta login(String email, String password) {
         // Trova utente per email
         Utente utente = utenteRepository.findByEmail(email)
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Credenziali non valide"));
         
-        // Verifica password (in produzione: hash)
-        if (!password.equals(utente.getPassword())) {
+        // Verifica password sul pool dedicato
+        if (password == null || !cifratorePassword.verifica(password, utente.getPassword())) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Credenziali non valide");
         }
         
-        // Genera token e associa
+        // Una password ancora in chiaro viene sostituita dal suo hash al primo accesso riuscito
+        if (cifratorePassword.inChiaro(utente.getPassword())) {
+            String passwordCifrata = cifratorePassword.cifra(password);
+            utenteRepository.aggiornaPassword(utente.getId(), passwordCifrata);
+            servizioGiornale.annota(VoceGiornale.password(utente.getId(), passwordCifrata));
+        }
+        
+        // Genera token e associa il principale (utente, conto, email)
         String token = servizioToken.generaToken();
-        servizioToken.associa(token, email);
+        servizioToken.associa(token, new Principale(utente.getId(), utente.getConto().getId(), utente.getEmail()));
         
         return new LoginRisposta(token);
     }
     
-    /**
-     * Trova un utente per token
-     */
-    public Utente trovaUtentePerToken(String token) {
-        String email = servizioToken.emailPer(token);
-        if (email == null) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token non valido");
-        }
-        
-        return utenteRepository.findByEmail(email)
-            .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Utente non trovato"));
-    }
-    
     /**
      * Effettua il logout
      */
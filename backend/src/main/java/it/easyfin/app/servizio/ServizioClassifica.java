@@ -0,0 +1,88 @@
+package it.easyfin.app.servizio;
+
+import it.easyfin.app.archivio.Classifica;
+import it.easyfin.app.archivio.Classifica.Primi;
+import it.easyfin.app.archivio.Principale;
+import it.easyfin.app.dominio.Conto;
+import it.easyfin.app.dominio.Denaro;
+import it.easyfin.app.dominio.Utente;
+import it.easyfin.app.dto.ClassificaRisposta;
+import it.easyfin.app.dto.VoceClassificaDto;
+import it.easyfin.app.repository.UtenteRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Servizio per la classifica degli utenti per NAV
+ *
+ * Tutti i conti partono dallo stesso saldo iniziale, quindi l'ordine per
+ * NAV coincide con quello per rendimento. I NAV arrivano dalla
+ * rivalutazione di sistema dopo ogni tick.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ServizioClassifica {
+
+    public static final int TOP_MASSIMO = 100;
+
+    @Autowired
+    private Classifica classifica;
+
+    @Autowired
+    private UtenteRepository utenteRepository;
+
+    /**
+     * Primi K utenti e, se il principale è presente, la posizione dell'utente
+     */
+    public ClassificaRisposta classifica(Principale principale, int top) {
+        if (top < 1 || top > TOP_MASSIMO) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                String.format("Parametro top non valido (1-%d)", TOP_MASSIMO));
+        }
+
+        Primi primi = classifica.primi(top);
+        List<Long> ids = new ArrayList<>(primi.numero() + 1);
+        for (int i = 0; i < primi.numero(); i++) {
+            ids.add(primi.utenteId(i));
+        }
+
+        if (principale != null) {
+            ids.add(principale.getUtenteId());
+        }
+
+        // Nomi dei soli utenti mostrati, con una query
+        Map<Long, String> nomi = new HashMap<>();
+        for (Utente utente : utenteRepository.findAllById(ids)) {
+            nomi.put(utente.getId(), utente.getNome());
+        }
+
+        List<VoceClassificaDto> voci = new ArrayList<>(primi.numero());
+        for (int i = 0; i < primi.numero(); i++) {
+            voci.add(voce(i + 1, nomi.get(primi.utenteId(i)), primi.nav(i)));
+        }
+
+        VoceClassificaDto voceUtente = null;
+        if (principale != null) {
+            int posizione = classifica.posizione(principale.getUtenteId());
+            Long nav = classifica.nav(principale.getUtenteId());
+            if (posizione > 0 && nav != null) {
+                voceUtente = voce(posizione, nomi.get(principale.getUtenteId()), nav);
+            }
+        }
+
+        return new ClassificaRisposta(voci, voceUtente, classifica.dimensione());
+    }
+
+    private static VoceClassificaDto voce(int posizione, String nome, long nav) {
+        double rendimento = (double) (nav - Conto.SALDO_INIZIALE) * 100 / Conto.SALDO_INIZIALE;
+        return new VoceClassificaDto(posizione, nome, Denaro.inEuro(nav), rendimento);
+    }
+}
@@ -0,0 +1,87 @@
+package it.easyfin.app.servizio;
+
+import it.easyfin.app.archivio.Principale;
+import it.easyfin.app.dominio.Conto;
+import it.easyfin.app.dominio.Denaro;
+import it.easyfin.app.dominio.MovimentoCassa;
+import it.easyfin.app.dto.ContoRisposta;
+import it.easyfin.app.dto.MovimentoCassaDto;
+import it.easyfin.app.dto.TotaliDto;
+import it.easyfin.app.repository.ContoRepository;
+import it.easyfin.app.repository.MovimentoCassaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Servizio per la lettura del conto
+ * 
+ * Riceve il principale già risolto dal filtro di autenticazione, legge
+ * il conto e una pagina limitata di movimenti a chiave su (data, id) e
+ * prende i totali dalla valutazione in cache del portafoglio.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ServizioConto {
+    
+    @Autowired
+    private ServizioPortafoglio servizioPortafoglio;
+    
+    @Autowired
+    private ContoRepository contoRepository;
+    
+    @Autowired
+    private MovimentoCassaRepository movimentoCassaRepository;
+    
+    /**
+     * Ottiene il conto dell'utente con una pagina di movimenti e i totali
+     */
+    public ContoRisposta contoPer(Principale principale, String cursore, int limite) {
+        Cursore.verificaLimite(limite);
+        
+        Conto conto = contoRepository.findById(principale.getContoId())
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Utente non trovato"));
+        
+        // Un elemento in più per sapere se esiste una pagina successiva
+        Limit limiteQuery = Limit.of(limite + 1);
+        List<MovimentoCassa> movimenti;
+        if (cursore == null || cursore.isBlank()) {
+            movimenti = movimentoCassaRepository.findByConto_IdOrderByDataDescIdDesc(conto.getId(), limiteQuery);
+        } else {
+            Cursore posizione = Cursore.leggi(cursore);
+            movimenti = movimentoCassaRepository.findPaginaDopo(conto.getId(), posizione.data, posizione.id, limiteQuery);
+        }
+        
+        String cursoreSuccessivo = null;
+        if (movimenti.size() > limite) {
+            movimenti = movimenti.subList(0, limite);
+            MovimentoCassa ultimo = movimenti.get(limite - 1);
+            cursoreSuccessivo = Cursore.scrivi(ultimo.getData(), ultimo.getId());
+        }
+        
+        List<MovimentoCassaDto> movimentiDto = movimenti.stream()
+            .map(m -> new MovimentoCassaDto(
+                m.getData().toString(),
+                m.getDescrizione(),
+                Denaro.inEuro(m.getImporto())
+            ))
+            .collect(Collectors.toList());
+        
+        TotaliDto totali = servizioPortafoglio.totaliPer(principale);
+        
+        return new ContoRisposta(
+            conto.getIban(),
+            totali.saldoContante,
+            movimentiDto,
+            totali.valoreStrumenti,
+            totali.nav,
+            cursoreSuccessivo
+        );
+    }
+}
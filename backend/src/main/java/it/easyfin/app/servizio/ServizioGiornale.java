@@ -0,0 +1,332 @@
+package it.easyfin.app.servizio;
+
+import it.easyfin.app.archivio.GiornaleOrdini;
+import it.easyfin.app.archivio.VoceGiornale;
+import it.easyfin.app.dominio.Denaro;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Servizio del giornale degli ordini
+ *
+ * Le voci prodotte durante una transazione vengono raccolte e scritte nel
+ * giornale solo dopo il commit, tutte insieme. All'avvio il giornale viene
+ * riletto per ricostruire utenti, conti, ordini, movimenti e posizioni nel
+ * database in memoria. Gli ordini limite ancora aperti tornano in attesa
+ * e le posizioni riprendono le loro soglie di stop-loss e take-profit.
+ * Gli ordini sono reinseriti con l'id assegnato dal database, annotato
+ * nel giornale: con più corsie l'ordine delle voci non segue quello degli
+ * id. I movimenti, che nessuna riga referenzia, ricevono invece id
+ * progressivi nell'ordine del giornale.
+ */
+@Service
+public class ServizioGiornale {
+
+    // Righe accumulate prima di ogni scrittura batch durante il ripristino
+    private static final int RIGHE_PER_BATCH = 1000;
+
+    private static final String INSERISCI_ORDINE =
+        "insert into ordini (id, utente_id, tipo, ticker, quantita, prezzo_esecuzione, data, stato, pnl_realizzato, " +
+        "prezzo_limite, riferimento) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private GiornaleOrdini giornaleOrdini;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Aggiunge una voce al giornale al commit della transazione corrente
+     */
+    public void annota(VoceGiornale voce) {
+        if (!giornaleOrdini.isAbilitato()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            giornaleOrdini.registra(Collections.singletonList(voce));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<VoceGiornale> voci = (List<VoceGiornale>) TransactionSynchronizationManager.getResource(this);
+        if (voci == null) {
+            List<VoceGiornale> nuove = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, nuove);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    giornaleOrdini.registra(nuove);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ServizioGiornale.this);
+                }
+            });
+            voci = nuove;
+        }
+        voci.add(voce);
+    }
+
+    /**
+     * Ricostruisce il database rileggendo il giornale
+     *
+     * Utenti, conti e ordini mantengono gli id originali; le posizioni vengono
+     * scritte solo nel loro stato finale, saldi e password con l'ultimo valore.
+     *
+     * @return il numero di voci rilette
+     */
+    @Transactional
+    public int ripristina() {
+        Ripristino ripristino = new Ripristino();
+        int voci;
+        try {
+            voci = giornaleOrdini.ripeti(ripristino::applica);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lettura del giornale non riuscita", e);
+        }
+        ripristino.completa();
+
+        if (voci > 0) {
+            riallineaIdentita("utenti");
+            riallineaIdentita("conti");
+            riallineaIdentita("ordini");
+        }
+        return voci;
+    }
+
+    /**
+     * Fa ripartire gli id generati dopo quelli reinseriti dal giornale
+     */
+    private void riallineaIdentita(String tabella) {
+        Long massimo = jdbcTemplate.queryForObject("select max(id) from " + tabella, Long.class);
+        if (massimo != null) {
+            jdbcTemplate.execute("alter table " + tabella + " alter column id restart with " + (massimo + 1));
+        }
+    }
+
+    /**
+     * Stato del ripristino: righe in attesa di batch, saldi e posizioni finali
+     *
+     * Righe di ordini: id, utente, tipo, ticker, quantità, prezzo di
+     * esecuzione, data, stato, P&L realizzato, prezzo limite, riferimento.
+     * Un ordine limite resta in memoria dall'apertura alla chiusura e la
+     * sua esecuzione ha il suo stesso id. Nei giornali senza id (voci
+     * ORDINE e LIMITE) gli id sono progressivi e l'esecuzione di un limite
+     * è la voce ORDINE subito prima della CHIUSURA: ogni voce ORDINE resta
+     * sospesa fino alla voce successiva.
+     */
+    private final class Ripristino {
+
+        final List<Object[]> conti = new ArrayList<>();
+        final List<Object[]> utentiDaInserire = new ArrayList<>();
+        final List<Object[]> ordini = new ArrayList<>();
+        final List<Object[]> movimenti = new ArrayList<>();
+        final Map<Long, Long> saldi = new HashMap<>();
+        final Map<Long, String> password = new HashMap<>();
+        final Map<String, Object[]> posizioni = new LinkedHashMap<>();
+        final Map<Long, Object[]> limitiAperti = new HashMap<>();
+        final Map<Long, Object[]> limitiPerId = new HashMap<>();
+        final Map<String, long[]> soglie = new HashMap<>();
+
+        // Ultima voce ORDINE, non ancora accodata
+        Object[] ordineSospeso;
+        // Ultimo id progressivo dei giornali senza id
+        long ultimoIdOrdine;
+
+        void applica(VoceGiornale voce) {
+            VoceGiornale.Lettore lettore = voce.lettore();
+            if (voce.getTipo() != VoceGiornale.Tipo.CHIUSURA) {
+                accodaSospeso();
+            }
+            switch (voce.getTipo()) {
+                case REGISTRAZIONE -> {
+                    long utenteId = lettore.leggiLong();
+                    long contoId = lettore.leggiLong();
+                    String nome = lettore.leggiTesto();
+                    String email = lettore.leggiTesto();
+                    String password = lettore.leggiTesto();
+                    String iban = lettore.leggiTesto();
+                    long saldo = lettore.leggiLong();
+                    conti.add(new Object[]{contoId, iban, Denaro.inEuro(saldo)});
+                    utentiDaInserire.add(new Object[]{utenteId, nome, email, password, contoId});
+                }
+                case ORDINE -> ordineSospeso = leggiEsecuzione(lettore, null);
+                case ESECUZIONE -> {
+                    long ordineId = lettore.leggiLong();
+                    Object[] esecuzione = leggiEsecuzione(lettore, ordineId);
+                    Object[] limite = limitiPerId.get(ordineId);
+                    if (limite != null) {
+                        applicaEsecuzione(limite, esecuzione);
+                    } else {
+                        ordini.add(esecuzione);
+                    }
+                }
+                case MOVIMENTO -> {
+                    long contoId = lettore.leggiLong();
+                    Date data = Date.valueOf(lettore.leggiData());
+                    String descrizione = lettore.leggiTesto();
+                    long importo = lettore.leggiLong();
+                    long saldoDopo = lettore.leggiLong();
+                    movimenti.add(new Object[]{contoId, data, descrizione, Denaro.inEuro(importo)});
+                    saldi.put(contoId, saldoDopo);
+                }
+                case POSIZIONE -> {
+                    long utenteId = lettore.leggiLong();
+                    String ticker = lettore.leggiTesto();
+                    int quantita = lettore.leggiInt();
+                    long prezzoMedio = lettore.leggiLong();
+                    posizioni.put(utenteId + "/" + ticker, new Object[]{utenteId, ticker, quantita, Denaro.inEuro(prezzoMedio)});
+                    // Una posizione chiusa perde le sue soglie
+                    if (quantita == 0) {
+                        soglie.remove(utenteId + "/" + ticker);
+                    }
+                }
+                case LIMITE -> apri(leggiLimite(lettore, ++ultimoIdOrdine));
+                case APERTURA -> {
+                    long ordineId = lettore.leggiLong();
+                    apri(leggiLimite(lettore, ordineId));
+                }
+                case CHIUSURA -> {
+                    long riferimento = lettore.leggiLong();
+                    String stato = lettore.leggiTesto();
+                    Object[] ordine = limitiAperti.remove(riferimento);
+                    if (ordine != null && "ESEGUITO".equals(stato) && ordineSospeso != null) {
+                        applicaEsecuzione(ordine, ordineSospeso);
+                        ordineSospeso = null;
+                    }
+                    accodaSospeso();
+                    if (ordine != null) {
+                        limitiPerId.remove((long) ordine[0]);
+                        ordine[7] = stato;
+                        ordini.add(ordine);
+                    }
+                }
+                case PASSWORD -> {
+                    long utenteId = lettore.leggiLong();
+                    password.put(utenteId, lettore.leggiTesto());
+                }
+                case SOGLIE -> {
+                    long utenteId = lettore.leggiLong();
+                    String ticker = lettore.leggiTesto();
+                    long stopLoss = lettore.leggiLong();
+                    long takeProfit = lettore.leggiLong();
+                    soglie.put(utenteId + "/" + ticker, new long[]{stopLoss, takeProfit});
+                }
+            }
+
+            if (conti.size() + ordini.size() + movimenti.size() >= RIGHE_PER_BATCH) {
+                scarica();
+            }
+        }
+
+        /**
+         * Ordine eseguito; ordineId è null nelle voci ORDINE
+         */
+        private Object[] leggiEsecuzione(VoceGiornale.Lettore lettore, Long ordineId) {
+            long utenteId = lettore.leggiLong();
+            String tipo = lettore.leggiTesto();
+            String ticker = lettore.leggiTesto();
+            int quantita = lettore.leggiInt();
+            long prezzo = lettore.leggiLong();
+            Date data = Date.valueOf(lettore.leggiData());
+            long pnl = lettore.leggiLong();
+            return new Object[]{ordineId, utenteId, tipo, ticker, quantita, Denaro.inEuro(prezzo), data,
+                                "ESEGUITO", Denaro.inEuroOpzionale(pnl), null, null};
+        }
+
+        private Object[] leggiLimite(VoceGiornale.Lettore lettore, long ordineId) {
+            long riferimento = lettore.leggiLong();
+            long utenteId = lettore.leggiLong();
+            String tipo = lettore.leggiTesto();
+            String ticker = lettore.leggiTesto();
+            int quantita = lettore.leggiInt();
+            long prezzoLimite = lettore.leggiLong();
+            Date data = Date.valueOf(lettore.leggiData());
+            return new Object[]{ordineId, utenteId, tipo, ticker, quantita, 0.0, data, "IN_ATTESA",
+                                null, Denaro.inEuro(prezzoLimite), riferimento};
+        }
+
+        /**
+         * L'ordine limite resta in memoria fino alla chiusura
+         */
+        private void apri(Object[] ordine) {
+            limitiAperti.put((long) ordine[10], ordine);
+            limitiPerId.put((long) ordine[0], ordine);
+        }
+
+        /**
+         * Prezzo, data e P&L dell'esecuzione vanno sulla riga dell'ordine limite
+         */
+        private void applicaEsecuzione(Object[] limite, Object[] esecuzione) {
+            limite[5] = esecuzione[5];
+            limite[6] = esecuzione[6];
+            limite[8] = esecuzione[8];
+        }
+
+        private void accodaSospeso() {
+            if (ordineSospeso != null) {
+                ordineSospeso[0] = ++ultimoIdOrdine;
+                ordini.add(ordineSospeso);
+                ordineSospeso = null;
+            }
+        }
+
+        /**
+         * Scrive le righe accumulate rispettando le chiavi esterne
+         */
+        void scarica() {
+            batch("insert into conti (id, iban, saldo_contante) values (?, ?, ?)", conti);
+            batch("insert into utenti (id, nome, email, password, conto_id) values (?, ?, ?, ?, ?)", utentiDaInserire);
+            batch(INSERISCI_ORDINE, ordini);
+            batch("insert into movimenti_cassa (conto_id, data, descrizione, importo) values (?, ?, ?, ?)", movimenti);
+        }
+
+        void completa() {
+            accodaSospeso();
+            ordini.addAll(limitiAperti.values());
+            scarica();
+
+            List<Object[]> righeSaldi = new ArrayList<>(saldi.size());
+            saldi.forEach((contoId, saldo) -> righeSaldi.add(new Object[]{Denaro.inEuro(saldo), contoId}));
+            batch("update conti set saldo_contante = ? where id = ?", righeSaldi);
+
+            List<Object[]> righePassword = new ArrayList<>(password.size());
+            password.forEach((utenteId, cifrata) -> righePassword.add(new Object[]{cifrata, utenteId}));
+            batch("update utenti set password = ? where id = ?", righePassword);
+
+            List<Object[]> righePosizioni = new ArrayList<>(posizioni.size());
+            for (Map.Entry<String, Object[]> voce : posizioni.entrySet()) {
+                Object[] posizione = voce.getValue();
+                if ((int) posizione[2] > 0) {
+                    long[] soglia = soglie.getOrDefault(voce.getKey(), new long[]{Denaro.NESSUNO, Denaro.NESSUNO});
+                    righePosizioni.add(new Object[]{posizione[0], posizione[1], posizione[2], posizione[3],
+                                                    Denaro.inEuroOpzionale(soglia[0]), Denaro.inEuroOpzionale(soglia[1])});
+                }
+            }
+            batch("insert into posizioni (utente_id, strumento_ticker, quantita, prezzo_medio, stop_loss, take_profit) " +
+                  "values (?, ?, ?, ?, ?, ?)", righePosizioni);
+        }
+
+        private void batch(String sql, List<Object[]> righe) {
+            if (!righe.isEmpty()) {
+                jdbcTemplate.batchUpdate(sql, righe);
+                righe.clear();
+            }
+        }
+    }
+}
@@ -1,17 +1,56 @@
 package it.easyfin.app.servizio;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.easyfin.app.archivio.ArchivioPosizioni;
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import it.easyfin.app.archivio.ArchivioValutazioni;
+import it.easyfin.app.archivio.ArchivioValutazioni.Valutazione;
+import it.easyfin.app.archivio.ArchivioValutazioni.Voce;
+import it.easyfin.app.archivio.LibroOrdini;
+import it.easyfin.app.archivio.LibroOrdini.Direzione;
+import it.easyfin.app.archivio.LibroOrdini.OrdineInAttesa;
+import it.easyfin.app.archivio.LibroSoglie;
+import it.easyfin.app.archivio.Principale;
+import it.easyfin.app.archivio.VoceGiornale;
 import it.easyfin.app.dominio.*;
 import it.easyfin.app.dto.*;
 import it.easyfin.app.repository.*;
+import it.easyfin.app.servizio.MetricheOrdini.Fase;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Servizio per la gestione del portafoglio
@@ -21,10 +60,13 @@ import java.util.stream.Collectors;
 public class ServizioPortafoglio {
     
     @Autowired
-    private ServizioAutenticazione servizioAutenticazione;
+    private ServizioQuotazioni servizioQuotazioni;
     
     @Autowired
-    private ServizioQuotazioni servizioQuotazioni;
+    private UtenteRepository utenteRepository;
+    
+    @Autowired
+    private ContoRepository contoRepository;
     
     @Autowired
     private PosizioneRepository posizioneRepository;
@@ -32,55 +74,307 @@ public class ServizioPortafoglio {
     @Autowired
     private OrdineRepository ordineRepository;
     
+    @Autowired
+    private ArchivioValutazioni archivioValutazioni;
+    
+    @Autowired
+    private LibroOrdini libroOrdini;
+    
+    @Autowired
+    private LibroSoglie libroSoglie;
+    
+    @Autowired
+    private ArchivioPosizioni archivioPosizioni;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private MetricheOrdini metricheOrdini;
+    
+    @Autowired
+    private ServizioGiornale servizioGiornale;
+    
+    @Autowired
+    private ServizioVersioni servizioVersioni;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${easyfin.ordini.batch-massimo:200}")
+    private int batchMassimo;
+    
+    private static final String INSERISCI_ORDINE = 
+        "insert into ordini (utente_id, tipo, ticker, quantita, prezzo_esecuzione, data, stato, pnl_realizzato) " +
+        "values (?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final String INSERISCI_MOVIMENTO = 
+        "insert into movimenti_cassa (conto_id, data, descrizione, importo) values (?, ?, ?, ?)";
+    
     /**
      * Ottiene il portafoglio di un utente
      */
-    public PortafoglioRisposta portafoglioPer(String token) {
-        Utente utente = servizioAutenticazione.trovaUtentePerToken(token);
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public PortafoglioRisposta portafoglioPer(Principale principale) {
+        return rispostaDa(valutazionePer(principale));
+    }
+    
+    /**
+     * Ottiene i totali del portafoglio di un utente dalla valutazione in cache
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public TotaliDto totaliPer(Principale principale) {
+        Valutazione valutazione = valutazionePer(principale);
+        synchronized (valutazione) {
+            return calcolaTotali(valutazione);
+        }
+    }
+    
+    /**
+     * Scrive lo storico ordini di un utente come array JSON
+     * 
+     * Gli ordini sono letti come stream JPA e serializzati uno alla volta,
+     * senza costruire la lista in memoria.
+     */
+    @Transactional(readOnly = true)
+    public void scriviStoricoOrdini(long utenteId, OutputStream uscita) throws IOException {
+        try (Stream<Ordine> ordini = ordineRepository.streamStorico(utenteId);
+             JsonGenerator json = objectMapper.getFactory().createGenerator(uscita)) {
+            // Lo stream di risposta resta al chiamante
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.writeStartArray();
+            Iterator<Ordine> iteratore = ordini.iterator();
+            while (iteratore.hasNext()) {
+                Ordine ordine = iteratore.next();
+                json.writeObject(convertiOrdine(ordine));
+                // Libera il contesto di persistenza man mano
+                entityManager.detach(ordine);
+            }
+            json.writeEndArray();
+        }
+    }
+    
+    /**
+     * Ottiene una pagina dello storico ordini con paginazione a chiave
+     * 
+     * Il cursore ha il formato "data_id" dell'ultimo ordine della pagina
+     * precedente; se assente restituisce la prima pagina.
+     */
+    @Transactional(readOnly = true)
+    public PaginaOrdiniRisposta paginaOrdini(Principale principale, String cursore, int limite) {
+        Cursore.verificaLimite(limite);
         
-        List<Posizione> posizioni = posizioneRepository.findByUtente(utente);
+        // Un elemento in più per sapere se esiste una pagina successiva
+        Limit limiteQuery = Limit.of(limite + 1);
+        List<Ordine> ordini;
+        if (cursore == null || cursore.isBlank()) {
+            ordini = ordineRepository.findByUtente_IdOrderByDataDescIdDesc(principale.getUtenteId(), limiteQuery);
+        } else {
+            Cursore posizione = Cursore.leggi(cursore);
+            ordini = ordineRepository.findPaginaDopo(principale.getUtenteId(), posizione.data, posizione.id, limiteQuery);
+        }
         
-        List<PosizioneDto> posizioniDto = posizioni.stream()
-            .map(this::convertiPosizione)
-            .collect(Collectors.toList());
+        String cursoreSuccessivo = null;
+        if (ordini.size() > limite) {
+            ordini = ordini.subList(0, limite);
+            Ordine ultimo = ordini.get(limite - 1);
+            cursoreSuccessivo = Cursore.scrivi(ultimo.getData(), ultimo.getId());
+        }
         
-        TotaliDto totali = calcolaTotali(utente, posizioni);
+        List<OrdineDto> ordiniDto = ordini.stream()
+            .map(this::convertiOrdine)
+            .collect(Collectors.toList());
         
-        return new PortafoglioRisposta(posizioniDto, totali);
+        return new PaginaOrdiniRisposta(ordiniDto, cursoreSuccessivo);
     }
     
     /**
-     * Ottiene lo storico ordini di un utente
+     * Esegue un ordine di acquisto
      */
-    public List<OrdineDto> storicoOrdini(String token) {
-        Utente utente = servizioAutenticazione.trovaUtentePerToken(token);
+    public PortafoglioRisposta acquista(Principale principale, AcquistoRichiesta richiesta) {
+        // Validazione
+        if (richiesta.quantita < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantità non valida");
+        }
         
-        return ordineRepository.findByUtenteOrderByDataDesc(utente).stream()
-            .map(this::convertiOrdine)
-            .collect(Collectors.toList());
+        long fase = System.nanoTime();
+        return rispostaDa(applicaAcquisto(principale, richiesta.ticker.toUpperCase(), richiesta.quantita, 
+                                          Denaro.NESSUNO, null, fase));
     }
     
     /**
-     * Esegue un ordine di acquisto
+     * Esegue un ordine di vendita
      */
-    public PortafoglioRisposta acquista(String token, AcquistoRichiesta richiesta) {
+    public PortafoglioRisposta vendi(Principale principale, VenditaRichiesta richiesta) {
         // Validazione
         if (richiesta.quantita < 1) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantità non valida");
         }
         
-        Utente utente = servizioAutenticazione.trovaUtentePerToken(token);
+        long fase = System.nanoTime();
+        return rispostaDa(applicaVendita(principale, richiesta.ticker.toUpperCase(), richiesta.quantita, 
+                                         Denaro.NESSUNO, null, fase));
+    }
+    
+    /**
+     * Inserisce un ordine limite in attesa
+     * 
+     * Saldo (al prezzo limite) e posizione sono verificati ora e di nuovo
+     * all'esecuzione. L'ordine entra nel libro solo dopo il commit.
+     */
+    public OrdineDto inserisciLimite(Principale principale, OrdineLimiteRichiesta richiesta) {
+        TipoOrdine tipo;
+        if ("ACQUISTO".equals(richiesta.tipo)) {
+            tipo = TipoOrdine.ACQUISTO;
+        } else if ("VENDITA".equals(richiesta.tipo)) {
+            tipo = TipoOrdine.VENDITA;
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Tipo ordine non valido");
+        }
+        if (richiesta.quantita < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantità non valida");
+        }
+        long prezzoLimite = Denaro.daEuro(richiesta.prezzoLimite);
+        if (prezzoLimite <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Prezzo limite non valido");
+        }
+        
+        Utente utente = utenteRepository.getReferenceById(principale.getUtenteId());
         String ticker = richiesta.ticker.toUpperCase();
+        // Verifica che lo strumento esista
+        servizioQuotazioni.prezzoCorrente(ticker);
+        
+        String errore = verificaEseguibile(principale, utente, tipo, ticker, richiesta.quantita, prezzoLimite);
+        if (errore != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, errore);
+        }
+        
+        Ordine ordine = new Ordine(utente, tipo, ticker, richiesta.quantita, 0, LocalDate.now(), StatoOrdine.IN_ATTESA);
+        ordine.setPrezzoLimite(prezzoLimite);
+        ordine.setRiferimento(ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE));
+        ordineRepository.save(ordine);
+        servizioGiornale.annota(VoceGiornale.apertura(ordine.getId(), ordine.getRiferimento(), principale.getUtenteId(), 
+            tipo.name(), ticker, richiesta.quantita, prezzoLimite, ordine.getData()));
+        
+        OrdineInAttesa inAttesa = inAttesaDa(ordine, principale.getUtenteId(), principale.getContoId());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                libroOrdini.inserisci(inAttesa);
+            }
+        });
+        return convertiOrdine(ordine);
+    }
+    
+    /**
+     * Annulla un ordine limite ancora in attesa
+     */
+    public OrdineDto annullaLimite(Principale principale, long ordineId) {
+        Ordine ordine = ordineRepository.findById(ordineId)
+            .filter(o -> o.getUtente().getId() == principale.getUtenteId())
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Ordine non trovato"));
+        if (ordine.getStato() != StatoOrdine.IN_ATTESA) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Ordine non più in attesa");
+        }
+        
+        OrdineInAttesa rimosso = libroOrdini.rimuovi(ordineId);
+        if (rimosso == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Ordine in esecuzione");
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    libroOrdini.inserisci(rimosso);
+                }
+            }
+        });
+        
+        chiudiLimite(ordine, StatoOrdine.ANNULLATO);
+        return convertiOrdine(ordine);
+    }
+    
+    /**
+     * Esegue un ordine limite scattato nel libro al prezzo corrente
+     * 
+     * Se saldo o posizione non bastano più l'ordine viene annullato.
+     * 
+     * @return false se il prezzo non raggiunge più il limite e l'ordine
+     *         va rimesso nel libro
+     */
+    public boolean eseguiLimite(OrdineInAttesa inAttesa) {
+        Ordine ordine = ordineRepository.findById(inAttesa.getOrdineId()).orElse(null);
+        if (ordine == null || ordine.getStato() != StatoOrdine.IN_ATTESA) {
+            return true;
+        }
+        
+        long fase = System.nanoTime();
+        String ticker = inAttesa.getTicker();
+        Istantanea listino = servizioQuotazioni.listino();
+        int ordinale = listino.ordinale(ticker);
+        if (ordinale < 0) {
+            chiudiLimite(ordine, StatoOrdine.ANNULLATO);
+            return true;
+        }
+        long prezzo = listino.prezzo(ordinale);
+        if (!inAttesa.scattaA(prezzo)) {
+            return false;
+        }
+        
+        Principale principale = new Principale(inAttesa.getUtenteId(), inAttesa.getContoId(), null);
+        Utente utente = utenteRepository.getReferenceById(principale.getUtenteId());
+        if (verificaEseguibile(principale, utente, inAttesa.getTipo(), ticker, inAttesa.getQuantita(), prezzo) != null) {
+            chiudiLimite(ordine, StatoOrdine.ANNULLATO);
+            return true;
+        }
+        
+        if (inAttesa.getTipo() == TipoOrdine.ACQUISTO) {
+            applicaAcquisto(principale, ticker, inAttesa.getQuantita(), prezzo, ordine, fase);
+        } else {
+            applicaVendita(principale, ticker, inAttesa.getQuantita(), prezzo, ordine, fase);
+        }
+        servizioGiornale.annota(VoceGiornale.chiusura(ordine.getRiferimento(), StatoOrdine.ESEGUITO.name()));
+        return true;
+    }
+    
+    /**
+     * Ordini limite in attesa salvati, da reinserire nel libro all'avvio
+     */
+    @Transactional(readOnly = true)
+    public List<OrdineInAttesa> ordiniInAttesa() {
+        List<OrdineInAttesa> risultato = new ArrayList<>();
+        for (Ordine ordine : ordineRepository.findInAttesa()) {
+            risultato.add(inAttesaDa(ordine, ordine.getUtente().getId(), ordine.getUtente().getConto().getId()));
+        }
+        return risultato;
+    }
+    
+    /**
+     * Acquisto al prezzo indicato (NESSUNO = prezzo corrente)
+     * 
+     * Se inAttesa non è null l'esecuzione aggiorna quell'ordine limite
+     * invece di crearne uno nuovo.
+     */
+    private Valutazione applicaAcquisto(Principale principale, String ticker, int quantita, long prezzo, 
+                                        Ordine inAttesa, long fase) {
+        Valutazione valutazione = valutazionePer(principale);
+        Utente utente = utenteRepository.getReferenceById(principale.getUtenteId());
+        Conto conto = contoDi(principale);
+        fase = metricheOrdini.registra(TipoOrdine.ACQUISTO, Fase.AUTENTICAZIONE, fase);
         
         // Trova strumento e prezzo
-        double prezzoCorrente = servizioQuotazioni.prezzoCorrente(ticker);
-        double costo = richiesta.quantita * prezzoCorrente;
+        long prezzoCorrente = prezzo != Denaro.NESSUNO ? prezzo : servizioQuotazioni.prezzoCorrente(ticker);
+        long costo = Denaro.controvalore(prezzoCorrente, quantita);
+        fase = metricheOrdini.registra(TipoOrdine.ACQUISTO, Fase.PREZZO, fase);
         
         // Verifica fondi sufficienti
-        if (utente.getConto().getSaldoContante() < costo) {
+        if (conto.getSaldoContante() < costo) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
                 String.format("Saldo insufficiente. Disponibile: €%.2f, Richiesto: €%.2f", 
-                    utente.getConto().getSaldoContante(), costo));
+                    Denaro.inEuro(conto.getSaldoContante()), Denaro.inEuro(costo)));
         }
         
         // Trova o crea posizione
@@ -88,98 +382,535 @@ public class ServizioPortafoglio {
         
         if (posizioneEsistente != null) {
             // Aggiorna posizione esistente
-            int quantitaTotale = posizioneEsistente.getQuantita() + richiesta.quantita;
-            double prezzoMedioNuovo = (posizioneEsistente.getQuantita() * posizioneEsistente.getPrezzoMedio() + 
-                                     richiesta.quantita * prezzoCorrente) / quantitaTotale;
+            int quantitaTotale = posizioneEsistente.getQuantita() + quantita;
+            long prezzoMedioNuovo = Denaro.prezzoMedio(posizioneEsistente.getQuantita(), 
+                                     posizioneEsistente.getPrezzoMedio(), quantita, prezzoCorrente);
             
             posizioneEsistente.setQuantita(quantitaTotale);
             posizioneEsistente.setPrezzoMedio(prezzoMedioNuovo);
             posizioneRepository.save(posizioneEsistente);
+            aggiornaValutazione(valutazione, ticker, quantitaTotale, prezzoMedioNuovo);
         } else {
-            // Crea nuova posizione
-            Strumento strumento = servizioQuotazioni.elencoStrumenti().stream()
-                .filter(s -> s.getTicker().equals(ticker))
-                .findFirst()
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, 
-                    String.format("Strumento '%s' non trovato", ticker)));
+            // Crea nuova posizione (riferimento allo strumento senza query)
+            Strumento strumento = servizioQuotazioni.riferimentoStrumento(ticker);
             
-            Posizione nuovaPosizione = new Posizione(utente, strumento, richiesta.quantita, prezzoCorrente);
+            Posizione nuovaPosizione = new Posizione(utente, strumento, quantita, prezzoCorrente);
             posizioneRepository.save(nuovaPosizione);
+            aggiornaValutazione(valutazione, ticker, quantita, prezzoCorrente);
         }
+        fase = metricheOrdini.registra(TipoOrdine.ACQUISTO, Fase.POSIZIONE, fase);
         
         // Preleva denaro dal conto
-        utente.getConto().preleva(costo, "Acquisto " + ticker);
+        conto.preleva(costo, "Acquisto " + ticker);
+        applicaSaldo(valutazione, conto.getSaldoContante());
+        servizioGiornale.annota(VoceGiornale.movimento(principale.getContoId(), LocalDate.now(), 
+            "Acquisto " + ticker, -costo, conto.getSaldoContante()));
         
         // Crea ordine
-        Ordine ordine = new Ordine(utente, TipoOrdine.ACQUISTO, ticker, richiesta.quantita, 
-                                   prezzoCorrente, LocalDate.now(), StatoOrdine.ESEGUITO);
-        ordineRepository.save(ordine);
+        Ordine ordine = registraEsecuzione(utente, TipoOrdine.ACQUISTO, ticker, quantita, prezzoCorrente, 
+                                           Denaro.NESSUNO, inAttesa);
+        servizioGiornale.annota(VoceGiornale.esecuzione(ordine.getId(), principale.getUtenteId(), 
+            TipoOrdine.ACQUISTO.name(), ticker, quantita, prezzoCorrente, ordine.getData(), Denaro.NESSUNO));
+        metricheOrdini.registraAlCompletamento(TipoOrdine.ACQUISTO, Fase.PERSISTENZA, fase);
         
-        return portafoglioPer(token);
+        return valutazione;
     }
     
     /**
-     * Esegue un ordine di vendita
+     * Vendita al prezzo indicato (NESSUNO = prezzo corrente)
+     * 
+     * Se inAttesa non è null l'esecuzione aggiorna quell'ordine limite
+     * invece di crearne uno nuovo.
      */
-    public PortafoglioRisposta vendi(String token, VenditaRichiesta richiesta) {
-        // Validazione
-        if (richiesta.quantita < 1) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantità non valida");
-        }
+    private Valutazione applicaVendita(Principale principale, String ticker, int quantita, long prezzo, 
+                                       Ordine inAttesa, long fase) {
+        Valutazione valutazione = valutazionePer(principale);
+        Utente utente = utenteRepository.getReferenceById(principale.getUtenteId());
+        Conto conto = contoDi(principale);
+        fase = metricheOrdini.registra(TipoOrdine.VENDITA, Fase.AUTENTICAZIONE, fase);
         
-        Utente utente = servizioAutenticazione.trovaUtentePerToken(token);
-        String ticker = richiesta.ticker.toUpperCase();
+        long prezzoCorrente = prezzo != Denaro.NESSUNO ? prezzo : servizioQuotazioni.prezzoCorrente(ticker);
+        long incasso = Denaro.controvalore(prezzoCorrente, quantita);
+        fase = metricheOrdini.registra(TipoOrdine.VENDITA, Fase.PREZZO, fase);
         
         // Trova posizione
         Posizione posizione = posizioneRepository.findByUtenteAndStrumento_Ticker(utente, ticker)
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Posizione non trovata"));
         
         // Verifica quantità disponibile
-        if (posizione.getQuantita() < richiesta.quantita) {
+        if (posizione.getQuantita() < quantita) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
                 String.format("Quantità non disponibile. Possedute: %d, Richieste: %d", 
-                    posizione.getQuantita(), richiesta.quantita));
+                    posizione.getQuantita(), quantita));
         }
         
-        double prezzoCorrente = servizioQuotazioni.prezzoCorrente(ticker);
-        double incasso = richiesta.quantita * prezzoCorrente;
-        
         // Calcola P&L realizzato
-        double pnlRealizzato = (prezzoCorrente - posizione.getPrezzoMedio()) * richiesta.quantita;
+        long pnlRealizzato = Denaro.pnl(prezzoCorrente, posizione.getPrezzoMedio(), quantita);
         
         // Aggiorna o rimuovi posizione
-        if (posizione.getQuantita() == richiesta.quantita) {
+        if (posizione.getQuantita() == quantita) {
             // Rimuovi posizione
             posizioneRepository.delete(posizione);
+            rimuoviSoglie(posizione.getId());
+            aggiornaValutazione(valutazione, ticker, 0, posizione.getPrezzoMedio());
         } else {
             // Riduci quantità
-            posizione.setQuantita(posizione.getQuantita() - richiesta.quantita);
+            posizione.setQuantita(posizione.getQuantita() - quantita);
             posizioneRepository.save(posizione);
+            aggiornaValutazione(valutazione, ticker, posizione.getQuantita(), posizione.getPrezzoMedio());
         }
+        fase = metricheOrdini.registra(TipoOrdine.VENDITA, Fase.POSIZIONE, fase);
         
         // Deposita denaro sul conto
-        utente.getConto().deposita(incasso, "Vendita " + ticker);
+        conto.deposita(incasso, "Vendita " + ticker);
+        applicaSaldo(valutazione, conto.getSaldoContante());
+        servizioGiornale.annota(VoceGiornale.movimento(principale.getContoId(), LocalDate.now(), 
+            "Vendita " + ticker, incasso, conto.getSaldoContante()));
         
         // Crea ordine con P&L realizzato
-        Ordine ordine = new Ordine(utente, TipoOrdine.VENDITA, ticker, richiesta.quantita, 
-                                   prezzoCorrente, LocalDate.now(), StatoOrdine.ESEGUITO);
+        Ordine ordine = registraEsecuzione(utente, TipoOrdine.VENDITA, ticker, quantita, prezzoCorrente, 
+                                           pnlRealizzato, inAttesa);
+        servizioGiornale.annota(VoceGiornale.esecuzione(ordine.getId(), principale.getUtenteId(), 
+            TipoOrdine.VENDITA.name(), ticker, quantita, prezzoCorrente, ordine.getData(), pnlRealizzato));
+        metricheOrdini.registraAlCompletamento(TipoOrdine.VENDITA, Fase.PERSISTENZA, fase);
+        
+        return valutazione;
+    }
+    
+    /**
+     * Salva l'ordine eseguito: nuovo, oppure l'ordine limite in attesa aggiornato
+     */
+    private Ordine registraEsecuzione(Utente utente, TipoOrdine tipo, String ticker, int quantita, long prezzo, 
+                                      long pnlRealizzato, Ordine inAttesa) {
+        Ordine ordine = inAttesa != null ? inAttesa : new Ordine(utente, tipo, ticker, quantita, 
+                                                                 prezzo, LocalDate.now(), StatoOrdine.ESEGUITO);
+        ordine.setPrezzoEsecuzione(prezzo);
+        ordine.setData(LocalDate.now());
+        ordine.setStato(StatoOrdine.ESEGUITO);
         ordine.setPnlRealizzato(pnlRealizzato);
         ordineRepository.save(ordine);
+        return ordine;
+    }
+    
+    /**
+     * Motivo per cui un ordine non è eseguibile al prezzo indicato, oppure null
+     */
+    private String verificaEseguibile(Principale principale, Utente utente, TipoOrdine tipo, String ticker, 
+                                      int quantita, long prezzo) {
+        if (tipo == TipoOrdine.ACQUISTO) {
+            long saldo = contoDi(principale).getSaldoContante();
+            long costo = Denaro.controvalore(prezzo, quantita);
+            if (saldo < costo) {
+                return String.format("Saldo insufficiente. Disponibile: €%.2f, Richiesto: €%.2f", 
+                    Denaro.inEuro(saldo), Denaro.inEuro(costo));
+            }
+            return null;
+        }
+        
+        Posizione posizione = posizioneRepository.findByUtenteAndStrumento_Ticker(utente, ticker).orElse(null);
+        if (posizione == null) {
+            return "Posizione non trovata";
+        }
+        if (posizione.getQuantita() < quantita) {
+            return String.format("Quantità non disponibile. Possedute: %d, Richieste: %d", 
+                posizione.getQuantita(), quantita);
+        }
+        return null;
+    }
+    
+    /**
+     * Chiude un ordine limite senza esecuzione e lo annota nel giornale
+     */
+    private void chiudiLimite(Ordine ordine, StatoOrdine stato) {
+        ordine.setStato(stato);
+        ordineRepository.save(ordine);
+        servizioGiornale.annota(VoceGiornale.chiusura(ordine.getRiferimento(), stato.name()));
+    }
+    
+    private static OrdineInAttesa inAttesaDa(Ordine ordine, long utenteId, long contoId) {
+        Direzione direzione = ordine.getTipo() == TipoOrdine.ACQUISTO ? Direzione.RIBASSO : Direzione.RIALZO;
+        return new OrdineInAttesa(ordine.getId(), ordine.getRiferimento(), utenteId, contoId, ordine.getTipo(), 
+                                  ordine.getTicker(), ordine.getQuantita(), ordine.getPrezzoLimite(), direzione);
+    }
+    
+    /**
+     * Esegue una lista di ordini in un'unica transazione
+     * 
+     * Tutte le gambe sono validate contro la stessa istantanea di prezzi,
+     * saldo e posizioni, aggiornata man mano che le gambe vengono applicate.
+     * In modalità TUTTO_O_NIENTE la prima gamba non valida annulla l'intero
+     * batch; in MIGLIOR_SFORZO viene saltata e segnalata negli esiti.
+     * Ordini e movimenti di cassa sono inseriti con batch JDBC.
+     */
+    public OrdiniBatchRisposta eseguiBatch(Principale principale, OrdiniBatchRichiesta richiesta) {
+        if (richiesta.ordini == null || richiesta.ordini.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Nessun ordine nel batch");
+        }
+        if (richiesta.ordini.size() > batchMassimo) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                String.format("Troppi ordini nel batch (massimo %d)", batchMassimo));
+        }
+        boolean tuttoONiente;
+        if (richiesta.modalita == null || "TUTTO_O_NIENTE".equals(richiesta.modalita)) {
+            tuttoONiente = true;
+        } else if ("MIGLIOR_SFORZO".equals(richiesta.modalita)) {
+            tuttoONiente = false;
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Modalità non valida: " + richiesta.modalita);
+        }
+        
+        return eseguiGambe(principale, richiesta.ordini, tuttoONiente);
+    }
+    
+    /**
+     * Imposta o rimuove (valore null) le soglie di stop-loss e take-profit di una posizione
+     * 
+     * Le soglie entrano nel libro dopo il commit; quando un tick le
+     * attraversa l'intera posizione viene venduta al prezzo corrente.
+     */
+    public SoglieDto impostaSoglie(Principale principale, String ticker, SoglieRichiesta richiesta) {
+        long stopLoss = sogliaDa(richiesta.stopLoss, "Stop-loss non valido");
+        long takeProfit = sogliaDa(richiesta.takeProfit, "Take-profit non valido");
+        if (stopLoss != Denaro.NESSUNO && takeProfit != Denaro.NESSUNO && stopLoss >= takeProfit) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                "Lo stop-loss deve essere inferiore al take-profit");
+        }
+        
+        Utente utente = utenteRepository.getReferenceById(principale.getUtenteId());
+        String tickerNormalizzato = ticker.toUpperCase();
+        Posizione posizione = posizioneRepository.findByUtenteAndStrumento_Ticker(utente, tickerNormalizzato)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Posizione non trovata"));
         
-        return portafoglioPer(token);
+        posizione.setStopLoss(stopLoss);
+        posizione.setTakeProfit(takeProfit);
+        posizioneRepository.save(posizione);
+        servizioGiornale.annota(VoceGiornale.soglie(principale.getUtenteId(), tickerNormalizzato, stopLoss, takeProfit));
+        
+        long posizioneId = posizione.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                libroSoglie.imposta(posizioneId, principale.getUtenteId(), principale.getContoId(), 
+                                    tickerNormalizzato, stopLoss, takeProfit);
+            }
+        });
+        return new SoglieDto(tickerNormalizzato, Denaro.inEuroOpzionale(stopLoss), Denaro.inEuroOpzionale(takeProfit));
+    }
+    
+    /**
+     * Vende in un unico batch le posizioni dell'utente di cui un tick ha attraversato una soglia
+     * 
+     * Le soglie cambiate o rimosse dopo essere scattate vengono ignorate.
+     * 
+     * @return l'esito del batch, oppure null se non restava nulla da vendere
+     */
+    public OrdiniBatchRisposta eseguiSoglie(long utenteId, long contoId, List<OrdineInAttesa> scattate) {
+        List<GambaOrdine> gambe = new ArrayList<>(scattate.size());
+        Set<Long> posizioniVendute = new HashSet<>();
+        for (OrdineInAttesa soglia : scattate) {
+            Posizione posizione = posizioneRepository.findById(soglia.getRiferimento()).orElse(null);
+            if (posizione == null) {
+                continue;
+            }
+            long attuale = soglia.getDirezione() == Direzione.RIBASSO ? posizione.getStopLoss() : posizione.getTakeProfit();
+            if (attuale == soglia.getPrezzo() && posizioniVendute.add(posizione.getId())) {
+                gambe.add(new GambaOrdine(TipoOrdine.VENDITA.name(), soglia.getTicker(), posizione.getQuantita()));
+            }
+        }
+        if (gambe.isEmpty()) {
+            return null;
+        }
+        return eseguiGambe(new Principale(utenteId, contoId, null), gambe, false);
     }
     
     /**
-     * Converte una posizione in DTO
+     * Rimette nel libro le soglie delle posizioni salvate
+     * 
+     * @return numero di posizioni con soglie
      */
-    private PosizioneDto convertiPosizione(Posizione posizione) {
+    @Transactional(readOnly = true)
+    public int caricaSoglie() {
+        List<Posizione> posizioni = posizioneRepository.findConSoglie();
+        for (Posizione posizione : posizioni) {
+            Utente utente = posizione.getUtente();
+            libroSoglie.imposta(posizione.getId(), utente.getId(), utente.getConto().getId(), 
+                                posizione.getStrumento().getTicker(), posizione.getStopLoss(), posizione.getTakeProfit());
+        }
+        return posizioni.size();
+    }
+    
+    /**
+     * Applica le gambe di un batch per l'utente indicato
+     */
+    private OrdiniBatchRisposta eseguiGambe(Principale principale, List<GambaOrdine> gambe, boolean tuttoONiente) {
+        Valutazione valutazione = valutazionePer(principale);
+        Utente utente = utenteRepository.getReferenceById(principale.getUtenteId());
+        Conto conto = contoDi(principale);
+        
+        // Istantanea di prezzi, saldo e posizioni su cui validare tutte le gambe
+        Istantanea listino = servizioQuotazioni.listino();
+        long saldo = conto.getSaldoContante();
+        Map<String, Posizione> posizioni = new HashMap<>();
+        for (Posizione posizione : posizioneRepository.findByUtente(utente)) {
+            posizioni.put(posizione.getStrumento().getTicker(), posizione);
+        }
+        
+        LocalDate oggi = LocalDate.now();
+        List<EsitoGambaDto> esiti = new ArrayList<>(gambe.size());
+        List<Object[]> righeOrdini = new ArrayList<>();
+        // Voci del giornale degli ordini, completate con l'id dopo l'inserimento
+        List<LongFunction<VoceGiornale>> vociOrdini = new ArrayList<>();
+        List<Object[]> righeMovimenti = new ArrayList<>();
+        Set<String> tickerToccati = new HashSet<>();
+        
+        for (int i = 0; i < gambe.size(); i++) {
+            GambaOrdine gamba = gambe.get(i);
+            String ticker = gamba.ticker != null ? gamba.ticker.toUpperCase() : null;
+            String errore = null;
+            TipoOrdine tipo = null;
+            int ordinale = ticker != null ? listino.ordinale(ticker) : -1;
+            
+            if ("ACQUISTO".equals(gamba.tipo)) {
+                tipo = TipoOrdine.ACQUISTO;
+            } else if ("VENDITA".equals(gamba.tipo)) {
+                tipo = TipoOrdine.VENDITA;
+            }
+            
+            // Validazione contro lo stato corrente del batch
+            Posizione posizione = ticker != null ? posizioni.get(ticker) : null;
+            long prezzo = ordinale >= 0 ? listino.prezzo(ordinale) : 0;
+            if (tipo == null) {
+                errore = "Tipo ordine non valido";
+            } else if (gamba.quantita < 1) {
+                errore = "Quantità non valida";
+            } else if (ordinale < 0) {
+                errore = String.format("Strumento '%s' non trovato", ticker);
+            } else if (tipo == TipoOrdine.ACQUISTO && saldo < Denaro.controvalore(prezzo, gamba.quantita)) {
+                errore = String.format("Saldo insufficiente. Disponibile: €%.2f, Richiesto: €%.2f", 
+                    Denaro.inEuro(saldo), Denaro.inEuro(Denaro.controvalore(prezzo, gamba.quantita)));
+            } else if (tipo == TipoOrdine.VENDITA && (posizione == null || posizione.getQuantita() == 0)) {
+                errore = "Posizione non trovata";
+            } else if (tipo == TipoOrdine.VENDITA && posizione.getQuantita() < gamba.quantita) {
+                errore = String.format("Quantità non disponibile. Possedute: %d, Richieste: %d", 
+                    posizione.getQuantita(), gamba.quantita);
+            }
+            
+            if (errore != null) {
+                if (tuttoONiente) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                        String.format("Ordine %d: %s", i + 1, errore));
+                }
+                esiti.add(new EsitoGambaDto(i, gamba.tipo, ticker, gamba.quantita, false, null, errore));
+                continue;
+            }
+            
+            // Applica la gamba a posizioni e saldo di lavoro
+            long pnlRealizzato = Denaro.NESSUNO;
+            long importo = Denaro.controvalore(prezzo, gamba.quantita);
+            if (tipo == TipoOrdine.ACQUISTO) {
+                if (posizione == null) {
+                    posizione = new Posizione(utente, servizioQuotazioni.riferimentoStrumento(ticker), 0, prezzo);
+                    posizioni.put(ticker, posizione);
+                }
+                int quantitaTotale = posizione.getQuantita() + gamba.quantita;
+                posizione.setPrezzoMedio(Denaro.prezzoMedio(posizione.getQuantita(), posizione.getPrezzoMedio(), 
+                                                            gamba.quantita, prezzo));
+                posizione.setQuantita(quantitaTotale);
+                saldo -= importo;
+                righeMovimenti.add(new Object[]{conto.getId(), oggi, "Acquisto " + ticker, Denaro.inEuro(-importo)});
+                servizioGiornale.annota(VoceGiornale.movimento(conto.getId(), oggi, "Acquisto " + ticker, -importo, saldo));
+            } else {
+                pnlRealizzato = Denaro.pnl(prezzo, posizione.getPrezzoMedio(), gamba.quantita);
+                posizione.setQuantita(posizione.getQuantita() - gamba.quantita);
+                saldo += importo;
+                righeMovimenti.add(new Object[]{conto.getId(), oggi, "Vendita " + ticker, Denaro.inEuro(importo)});
+                servizioGiornale.annota(VoceGiornale.movimento(conto.getId(), oggi, "Vendita " + ticker, importo, saldo));
+            }
+            
+            righeOrdini.add(new Object[]{utente.getId(), tipo.name(), ticker, gamba.quantita, Denaro.inEuro(prezzo), 
+                                         oggi, StatoOrdine.ESEGUITO.name(), Denaro.inEuroOpzionale(pnlRealizzato)});
+            String nomeTipo = tipo.name();
+            long pnl = pnlRealizzato;
+            vociOrdini.add(ordineId -> VoceGiornale.esecuzione(ordineId, utente.getId(), nomeTipo, ticker, 
+                gamba.quantita, prezzo, oggi, pnl));
+            tickerToccati.add(ticker);
+            esiti.add(new EsitoGambaDto(i, tipo.name(), ticker, gamba.quantita, true, Denaro.inEuro(prezzo), null));
+        }
+        
+        // Persistenza: posizioni via JPA, ordini e movimenti con batch JDBC
+        for (String ticker : tickerToccati) {
+            Posizione posizione = posizioni.get(ticker);
+            if (posizione.getQuantita() == 0) {
+                if (posizione.getId() != null) {
+                    posizioneRepository.delete(posizione);
+                    rimuoviSoglie(posizione.getId());
+                }
+            } else if (posizione.getId() == null) {
+                posizioneRepository.save(posizione);
+            }
+            aggiornaValutazione(valutazione, ticker, posizione.getQuantita(), posizione.getPrezzoMedio());
+        }
+        
+        if (!righeOrdini.isEmpty()) {
+            conto.setSaldoContante(saldo);
+            long[] idOrdini = inserisciOrdini(righeOrdini);
+            for (int i = 0; i < idOrdini.length; i++) {
+                servizioGiornale.annota(vociOrdini.get(i).apply(idOrdini[i]));
+            }
+            jdbcTemplate.batchUpdate(INSERISCI_MOVIMENTO, righeMovimenti);
+            applicaSaldo(valutazione, saldo);
+        }
+        
+        return new OrdiniBatchRisposta(esiti, rispostaDa(valutazione));
+    }
+    
+    /**
+     * Inserisce gli ordini con un batch JDBC
+     * 
+     * @return gli id assegnati dal database, nell'ordine delle righe
+     */
+    private long[] inserisciOrdini(List<Object[]> righe) {
+        KeyHolder chiavi = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connessione -> connessione.prepareStatement(INSERISCI_ORDINE, new String[]{"id"}), 
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    new ArgumentPreparedStatementSetter(righe.get(i)).setValues(ps);
+                }
+                
+                @Override
+                public int getBatchSize() {
+                    return righe.size();
+                }
+            }, chiavi);
+        
+        List<Map<String, Object>> generate = chiavi.getKeyList();
+        long[] id = new long[generate.size()];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = ((Number) generate.get(i).values().iterator().next()).longValue();
+        }
+        return id;
+    }
+    
+    /**
+     * Toglie dal libro le soglie di una posizione chiusa, dopo il commit
+     */
+    private void rimuoviSoglie(long posizioneId) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                libroSoglie.rimuovi(posizioneId);
+            }
+        });
+    }
+    
+    private static long sogliaDa(Double euro, String errore) {
+        if (euro == null) {
+            return Denaro.NESSUNO;
+        }
+        long centesimi = Denaro.daEuro(euro);
+        if (centesimi <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, errore);
+        }
+        return centesimi;
+    }
+    
+    /**
+     * Valutazione in cache dell'utente, caricata dal database al primo accesso
+     */
+    private Valutazione valutazionePer(Principale principale) {
+        Valutazione valutazione = archivioValutazioni.trova(principale.getUtenteId());
+        if (valutazione != null) {
+            return valutazione;
+        }
+        
+        Utente utente = utenteRepository.getReferenceById(principale.getUtenteId());
+        List<Posizione> posizioni = posizioneRepository.findByUtente(utente);
+        return archivioValutazioni.carica(principale.getUtenteId(), contoDi(principale).getSaldoContante(), posizioni);
+    }
+    
+    /**
+     * Carica il conto dell'utente autenticato
+     */
+    private Conto contoDi(Principale principale) {
+        return contoRepository.findById(principale.getContoId())
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Utente non trovato"));
+    }
+    
+    /**
+     * Aggiorna la posizione in cache e la invalida se la transazione non va a buon fine
+     * 
+     * Il nuovo stato della posizione viene anche annotato nel giornale e,
+     * dopo il commit, passato alla rivalutazione di sistema. A transazione
+     * conclusa, comunque sia andata, la versione dell'utente avanza e gli
+     * ETag di portafoglio e conto non corrispondono più.
+     */
+    private void aggiornaValutazione(Valutazione valutazione, String ticker, int quantita, long prezzoMedio) {
+        archivioValutazioni.applicaPosizione(valutazione, ticker, quantita, prezzoMedio);
+        servizioGiornale.annota(VoceGiornale.posizione(valutazione.getUtenteId(), ticker, quantita, prezzoMedio));
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            long utenteId = valutazione.getUtenteId();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        archivioValutazioni.rimuovi(utenteId);
+                    } else {
+                        archivioPosizioni.applicaPosizione(utenteId, ticker, quantita, prezzoMedio);
+                    }
+                    servizioVersioni.incrementa(utenteId);
+                }
+            });
+        } else {
+            servizioVersioni.incrementa(valutazione.getUtenteId());
+        }
+    }
+    
+    /**
+     * Aggiorna il saldo in cache e, dopo il commit, quello della rivalutazione di sistema
+     *
+     * Saldo e movimenti cambiano insieme: a transazione conclusa avanza la
+     * versione dell'utente.
+     */
+    private void applicaSaldo(Valutazione valutazione, long saldo) {
+        archivioValutazioni.applicaSaldo(valutazione, saldo);
+        long utenteId = valutazione.getUtenteId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    archivioPosizioni.applicaSaldo(utenteId, saldo);
+                }
+                servizioVersioni.incrementa(utenteId);
+            }
+        });
+    }
+    
+    /**
+     * Costruisce la risposta del portafoglio dalla valutazione in cache
+     */
+    private PortafoglioRisposta rispostaDa(Valutazione valutazione) {
+        synchronized (valutazione) {
+            List<PosizioneDto> posizioniDto = new ArrayList<>(valutazione.getPosizioni().size());
+            for (Map.Entry<String, Voce> voce : valutazione.getPosizioni().entrySet()) {
+                posizioniDto.add(convertiPosizione(voce.getKey(), voce.getValue()));
+            }
+            return new PortafoglioRisposta(posizioniDto, calcolaTotali(valutazione));
+        }
+    }
+    
+    /**
+     * Converte una posizione in cache in DTO
+     */
+    private PosizioneDto convertiPosizione(String ticker, Voce voce) {
         return new PosizioneDto(
-            posizione.getStrumento().getTicker(),
-            posizione.getQuantita(),
-            posizione.getPrezzoMedio(),
-            posizione.getStrumento().getPrezzoCorrente(),
-            posizione.getValoreMercato(),
-            posizione.getPnlNonRealizzato()
+            ticker,
+            voce.getQuantita(),
+            Denaro.inEuro(voce.getPrezzoMedio()),
+            Denaro.inEuro(voce.getPrezzoCorrente()),
+            Denaro.inEuro(voce.getValoreMercato()),
+            Denaro.inEuro(voce.getPnlNonRealizzato())
         );
     }
     
@@ -192,28 +923,23 @@ public class ServizioPortafoglio {
             ordine.getTipo().name(),
             ordine.getTicker(),
             ordine.getQuantita(),
-            ordine.getPrezzoEsecuzione(),
+            Denaro.inEuro(ordine.getPrezzoEsecuzione()),
             ordine.getData().toString(),
             ordine.getStato().name(),
-            ordine.getPnlRealizzato()
+            Denaro.inEuroOpzionale(ordine.getPnlRealizzato()),
+            Denaro.inEuroOpzionale(ordine.getPrezzoLimite())
         );
     }
     
     /**
-     * Calcola i totali del portafoglio
+     * Calcola i totali del portafoglio dagli aggregati in cache
      */
-    private TotaliDto calcolaTotali(Utente utente, List<Posizione> posizioni) {
-        double valoreStrumenti = posizioni.stream()
-            .mapToDouble(Posizione::getValoreMercato)
-            .sum();
-        
-        double saldoContante = utente.getConto().getSaldoContante();
-        double nav = valoreStrumenti + saldoContante;
-        
-        double pnlNonRealizzatoTotale = posizioni.stream()
-            .mapToDouble(Posizione::getPnlNonRealizzato)
-            .sum();
-        
-        return new TotaliDto(valoreStrumenti, saldoContante, nav, pnlNonRealizzatoTotale);
+    private TotaliDto calcolaTotali(Valutazione valutazione) {
+        return new TotaliDto(
+            Denaro.inEuro(valutazione.getValoreStrumenti()),
+            Denaro.inEuro(valutazione.getSaldoContante()),
+            Denaro.inEuro(valutazione.getNav()),
+            Denaro.inEuro(valutazione.getPnlNonRealizzato())
+        );
     }
 }
@@ -1,64 +1,289 @@
 package it.easyfin.app.servizio;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.easyfin.app.archivio.ArchivioPrezzi;
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import it.easyfin.app.archivio.ArchivioValutazioni;
+import it.easyfin.app.archivio.IndiceStrumenti;
+import it.easyfin.app.dominio.Denaro;
 import it.easyfin.app.dominio.Strumento;
 import it.easyfin.app.repository.StrumentoRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Servizio per la gestione delle quotazioni
+ *
+ * Le letture di prezzi e strumenti passano dal listino in memoria
+ * (ArchivioPrezzi); il database riceve i prezzi solo in scrittura differita.
  */
 @Service
-@Transactional
 public class ServizioQuotazioni {
-    
+
+    public static final int RISULTATI_RICERCA_MASSIMI = 50;
+
     @Autowired
     private StrumentoRepository strumentoRepository;
-    
+
+    @Autowired
+    private ArchivioPrezzi archivioPrezzi;
+
+    @Autowired
+    private ArchivioValutazioni archivioValutazioni;
+
+    @Autowired
+    private IndiceStrumenti indiceStrumenti;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectProvider<AscoltatoreTick> ascoltatoriTick;
+
+    @Autowired
+    private MeterRegistry registro;
+
+    private Timer durataTick;
+
+    // Ultima istantanea del listino scritta sul database
+    private volatile Istantanea listinoPersistito;
+
+    // Ultima codifica colonnare, riusata finché il listino non cambia versione
+    private volatile ListinoColonnare ultimoColonnare;
+
+    private static final String AGGIORNA_PREZZO =
+        "update strumenti set prezzo_corrente = ? where ticker = ?";
+
+    @PostConstruct
+    void registraMetriche() {
+        durataTick = Timer.builder("easyfin.tick.durata")
+            .description("Durata di un tick: prezzi, valutazioni e notifiche")
+            .publishPercentileHistogram()
+            .register(registro);
+    }
+
     /**
-     * Ottiene il prezzo corrente di uno strumento
+     * Ottiene il prezzo corrente di uno strumento, in centesimi
      */
-    public double prezzoCorrente(String ticker) {
-        return strumentoRepository.findById(ticker.toUpperCase())
-            .map(Strumento::getPrezzoCorrente)
-            .orElseThrow(() -> new IllegalArgumentException("Strumento non trovato: " + ticker));
+    public long prezzoCorrente(String ticker) {
+        Istantanea listino = archivioPrezzi.istantanea();
+        return listino.prezzo(ordinaleObbligatorio(listino, ticker.toUpperCase()));
     }
-    
+
+    /**
+     * Ottiene l'istantanea corrente del listino, per leggere più prezzi coerenti tra loro
+     */
+    public Istantanea listino() {
+        return archivioPrezzi.istantanea();
+    }
+
+    /**
+     * Ottiene un riferimento allo strumento senza interrogare il database
+     *
+     * Va usato all'interno di una transazione, ad esempio per associare
+     * lo strumento a una nuova posizione.
+     */
+    public Strumento riferimentoStrumento(String ticker) {
+        Istantanea listino = archivioPrezzi.istantanea();
+        return strumentoRepository.getReferenceById(listino.ticker(ordinaleObbligatorio(listino, ticker)));
+    }
+
     /**
      * Ottiene l'elenco di tutti gli strumenti
      */
     public List<Strumento> elencoStrumenti() {
-        return strumentoRepository.findAll();
+        return daIstantanea(archivioPrezzi.istantanea());
+    }
+
+    /**
+     * Listino completo nella codifica binaria colonnare
+     *
+     * Tra un tick e l'altro tutte le richieste ricevono gli stessi byte,
+     * codificati una sola volta per versione del listino.
+     */
+    public byte[] listinoColonnare() {
+        Istantanea listino = archivioPrezzi.istantanea();
+        ListinoColonnare ultimo = ultimoColonnare;
+        if (ultimo == null || ultimo.versione() != listino.versione()) {
+            ultimo = ListinoColonnare.codifica(listino);
+            ultimoColonnare = ultimo;
+        }
+        return ultimo.dati();
     }
-    
+
+    /**
+     * Cerca strumenti per prefisso del ticker o delle parole del nome,
+     * con corrispondenze approssimate se i prefissi non bastano
+     */
+    public List<Strumento> cercaStrumenti(String testo, int limite) {
+        if (limite < 1 || limite > RISULTATI_RICERCA_MASSIMI) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                String.format("Parametro limite non valido (1-%d)", RISULTATI_RICERCA_MASSIMI));
+        }
+
+        Istantanea listino = archivioPrezzi.istantanea();
+        List<Strumento> strumenti = new ArrayList<>(limite);
+        for (String ticker : indiceStrumenti.cerca(testo != null ? testo : "", limite)) {
+            int ordinale = listino.ordinale(ticker);
+            if (ordinale >= 0) {
+                strumenti.add(new Strumento(ticker, listino.nome(ordinale), listino.prezzo(ordinale)));
+            }
+        }
+        return strumenti;
+    }
+
+    /**
+     * Carica il listino in memoria dal database
+     */
+    @Transactional(readOnly = true)
+    public void caricaListino() {
+        archivioPrezzi.carica(strumentoRepository.findAll());
+        pubblicaListinoCaricato();
+    }
+
+    /**
+     * Carica il listino in memoria da strumenti appena scritti sul database
+     */
+    public void caricaListino(String[] ticker, String[] nomi, long[] prezzi) {
+        archivioPrezzi.carica(ticker, nomi, prezzi);
+        pubblicaListinoCaricato();
+    }
+
+    // Il listino appena caricato coincide con il database; l'indice di ricerca
+    // riceve solo gli strumenti aggiunti, rinominati o usciti
+    private void pubblicaListinoCaricato() {
+        listinoPersistito = archivioPrezzi.istantanea();
+        indiceStrumenti.allinea(listinoPersistito);
+    }
+
     /**
      * Aggiorna i prezzi degli strumenti con rumore ±2%
      */
     public List<Strumento> aggiornaPrezziConRumore() {
-        List<Strumento> strumenti = strumentoRepository.findAll();
-        Random random = new Random();
-        
-        for (Strumento strumento : strumenti) {
-            // Applica rumore ±2%
-            double delta = (random.nextDouble() - 0.5) * 0.04; // [-2%, +2%]
-            double nuovoPrezzo = strumento.getPrezzoCorrente() * (1 + delta);
-            
-            // Arrotonda a 2 decimali
-            nuovoPrezzo = Math.round(nuovoPrezzo * 100.0) / 100.0;
-            
-            // Assicurati che il prezzo sia positivo
-            if (nuovoPrezzo <= 0) {
-                nuovoPrezzo = strumento.getPrezzoCorrente() * 0.98; // minimo -2%
+        return daIstantanea(eseguiTick());
+    }
+
+    /**
+     * Esegue un tick di mercato su tutto l'universo
+     *
+     * Genera i nuovi prezzi in un solo passaggio su array primitivi,
+     * pubblica la nuova istantanea e propaga le variazioni alle valutazioni
+     * e agli ascoltatori dei tick. Il database viene aggiornato dalla scrittura differita.
+     */
+    public Istantanea eseguiTick() {
+        long inizio = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Istantanea listino;
+        Istantanea nuovo;
+
+        do {
+            listino = archivioPrezzi.istantanea();
+            long[] prezzi = listino.copiaPrezzi();
+
+            for (int i = 0; i < prezzi.length; i++) {
+                // Applica rumore ±2%, arrotondando al centesimo
+                double delta = (random.nextDouble() - 0.5) * 0.04; // [-2%, +2%]
+                long nuovoPrezzo = Denaro.varia(prezzi[i], delta);
+
+                // Assicurati che il prezzo sia positivo
+                if (nuovoPrezzo <= 0) {
+                    nuovoPrezzo = Math.max(1, prezzi[i]); // minimo un centesimo
+                }
+
+                prezzi[i] = nuovoPrezzo;
+            }
+
+            nuovo = archivioPrezzi.pubblica(listino, prezzi);
+        } while (nuovo == null);
+
+        // Aggiorna le valutazioni dei soli utenti che detengono i ticker variati
+        archivioValutazioni.applicaListino(listino, nuovo);
+
+        Istantanea precedente = listino;
+        Istantanea pubblicato = nuovo;
+        ascoltatoriTick.orderedStream().forEach(ascoltatore -> ascoltatore.dopoTick(precedente, pubblicato));
+
+        durataTick.record(System.nanoTime() - inizio, TimeUnit.NANOSECONDS);
+        return nuovo;
+    }
+
+    /**
+     * Scrittura differita dei prezzi sul database
+     *
+     * Scrive con un unico batch JDBC solo i prezzi cambiati dall'ultima
+     * istantanea persistita.
+     */
+    @Scheduled(fixedDelayString = "${easyfin.prezzi.scrittura-differita-ms:1000}")
+    @Transactional
+    public void salvaPrezzi() {
+        Istantanea listino = archivioPrezzi.istantanea();
+        Istantanea persistito = listinoPersistito;
+        if (persistito == null || listino.versione() == persistito.versione()) {
+            return;
+        }
+
+        boolean stessoUniverso = listino.stessoUniverso(persistito);
+        int[] variati = new int[listino.dimensione()];
+        int numeroVariati = 0;
+        for (int i = 0; i < listino.dimensione(); i++) {
+            if (!stessoUniverso || listino.prezzo(i) != persistito.prezzo(i)) {
+                variati[numeroVariati++] = i;
+            }
+        }
+
+        int totale = numeroVariati;
+        jdbcTemplate.batchUpdate(AGGIORNA_PREZZO, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement istruzione, int i) throws SQLException {
+                istruzione.setDouble(1, Denaro.inEuro(listino.prezzo(variati[i])));
+                istruzione.setString(2, listino.ticker(variati[i]));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return totale;
             }
-            
-            strumento.setPrezzoCorrente(nuovoPrezzo);
-            strumentoRepository.save(strumento);
+        });
+
+        listinoPersistito = listino;
+    }
+
+    /**
+     * Ordinale del ticker nel listino o errore se lo strumento non esiste
+     */
+    private int ordinaleObbligatorio(Istantanea listino, String ticker) {
+        int ordinale = listino.ordinale(ticker);
+        if (ordinale < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                String.format("Strumento '%s' non trovato", ticker));
+        }
+        return ordinale;
+    }
+
+    /**
+     * Converte un'istantanea del listino in strumenti non gestiti da JPA
+     */
+    private List<Strumento> daIstantanea(Istantanea listino) {
+        List<Strumento> strumenti = new ArrayList<>(listino.dimensione());
+        for (int i = 0; i < listino.dimensione(); i++) {
+            strumenti.add(new Strumento(listino.ticker(i), listino.nome(i), listino.prezzo(i)));
         }
-        
         return strumenti;
     }
 }
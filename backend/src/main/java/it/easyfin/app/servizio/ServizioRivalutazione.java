@@ -0,0 +1,197 @@
+package it.easyfin.app.servizio;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.easyfin.app.archivio.ArchivioPosizioni;
+import it.easyfin.app.archivio.ArchivioPosizioni.IstantaneaPosizioni;
+import it.easyfin.app.archivio.ArchivioPosizioni.Rivalutazione;
+import it.easyfin.app.archivio.ArchivioPrezzi;
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import it.easyfin.app.archivio.Classifica;
+import it.easyfin.app.dominio.Denaro;
+import it.easyfin.app.dto.RivalutazioneDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rivalutazione mark-to-market di tutti i conti dopo ogni tick
+ *
+ * Ricalcola NAV e P&L non realizzato di ogni utente sull'istantanea
+ * colonnare di ArchivioPosizioni, in parallelo su un pool fork-join
+ * dedicato. Il thread del tick si limita a segnalare il nuovo listino:
+ * se una rivalutazione è ancora in corso i tick intermedi vengono
+ * assorbiti e si rivaluta direttamente l'ultimo. I NAV risultanti
+ * aggiornano la classifica; un ordine eseguito al prezzo di mercato
+ * scambia contante e titoli allo stesso valore e non cambia il NAV.
+ */
+@Service
+public class ServizioRivalutazione implements AscoltatoreTick {
+
+    private static final Logger log = LoggerFactory.getLogger(ServizioRivalutazione.class);
+
+    // NAV scritti in classifica per ogni lock: i lettori attendono al più un blocco
+    private static final int BLOCCO_CLASSIFICA = 1024;
+
+    @Autowired
+    private ArchivioPosizioni archivioPosizioni;
+
+    @Autowired
+    private ArchivioPrezzi archivioPrezzi;
+
+    @Autowired
+    private Classifica classifica;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry registro;
+
+    // 0 = un thread per processore
+    @Value("${easyfin.rivalutazione.parallelismo:0}")
+    private int parallelismo;
+
+    private ForkJoinPool pool;
+    private Timer durata;
+
+    private final AtomicReference<Istantanea> daRivalutare = new AtomicReference<>();
+    private volatile Rivalutazione ultima = Rivalutazione.VUOTA;
+
+    @PostConstruct
+    void avvia() {
+        int thread = parallelismo > 0 ? parallelismo : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(thread, p -> {
+            ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            worker.setName("rivalutazione-" + worker.getPoolIndex());
+            return worker;
+        }, null, false);
+
+        durata = Timer.builder("easyfin.rivalutazione.durata")
+            .description("Durata della rivalutazione di tutti i conti dopo un tick")
+            .publishPercentileHistogram()
+            .register(registro);
+        Gauge.builder("easyfin.rivalutazione.utenti", this, s -> s.ultima.numeroUtenti())
+            .description("Utenti nell'ultima rivalutazione")
+            .register(registro);
+    }
+
+    @PreDestroy
+    void arresta() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Carica saldi e posizioni di tutti gli utenti dal database e
+     * calcola la prima rivalutazione
+     */
+    public void carica() {
+        archivioPosizioni.svuota();
+        jdbcTemplate.query("select u.id, c.saldo_contante from utenti u join conti c on c.id = u.conto_id",
+            (RowCallbackHandler) riga -> archivioPosizioni.applicaSaldo(riga.getLong(1), Denaro.daEuro(riga.getDouble(2))));
+        jdbcTemplate.query("select utente_id, strumento_ticker, quantita, prezzo_medio from posizioni",
+            (RowCallbackHandler) riga -> archivioPosizioni.applicaPosizione(riga.getLong(1), riga.getString(2), riga.getInt(3),
+                Denaro.daEuro(riga.getDouble(4))));
+        rivaluta(archivioPrezzi.istantanea());
+    }
+
+    /**
+     * Registra un nuovo utente con il suo saldo iniziale, anche in classifica
+     */
+    public void registra(long utenteId, long saldo) {
+        archivioPosizioni.applicaSaldo(utenteId, saldo);
+        classifica.aggiorna(utenteId, saldo);
+    }
+
+    @Override
+    public void dopoTick(Istantanea precedente, Istantanea nuovo) {
+        if (daRivalutare.getAndSet(nuovo) == null) {
+            pool.execute(this::esegui);
+        }
+    }
+
+    /**
+     * Ultima rivalutazione completata
+     */
+    public Rivalutazione ultima() {
+        return ultima;
+    }
+
+    /**
+     * Totali di sistema dell'ultima rivalutazione
+     */
+    public RivalutazioneDto riepilogo() {
+        Rivalutazione rivalutazione = ultima;
+        return new RivalutazioneDto(rivalutazione.getVersioneListino(), rivalutazione.numeroUtenti(),
+            Denaro.inEuro(rivalutazione.getNavTotale()), Denaro.inEuro(rivalutazione.getPnlTotale()));
+    }
+
+    private void esegui() {
+        Istantanea listino = daRivalutare.get();
+        while (true) {
+            try {
+                rivaluta(listino);
+            } catch (RuntimeException e) {
+                log.error("Errore durante la rivalutazione dei conti", e);
+            }
+            // Nessun tick nel frattempo: il prossimo ripianificherà il lavoro
+            if (daRivalutare.compareAndSet(listino, null)) {
+                return;
+            }
+            listino = daRivalutare.get();
+        }
+    }
+
+    private void rivaluta(Istantanea listino) {
+        long inizio = System.nanoTime();
+        Rivalutazione precedente = ultima;
+        IstantaneaPosizioni posizioni = archivioPosizioni.istantanea(listino);
+        Rivalutazione rivalutazione = posizioni.rivaluta(pool, listino.copiaPrezzi(), listino.versione());
+        ultima = rivalutazione;
+        durata.record(System.nanoTime() - inizio, TimeUnit.NANOSECONDS);
+
+        aggiornaClassifica(precedente, rivalutazione);
+    }
+
+    /**
+     * Porta in classifica i NAV cambiati rispetto alla rivalutazione precedente
+     *
+     * Con la stessa istantanea di posizioni il confronto è per indice e
+     * avviene senza lock; altrimenti (utenti, saldi o posizioni cambiati)
+     * si riscrivono tutti i NAV, dato che la classifica ignora quelli uguali.
+     * Le scritture sono raggruppate in blocchi, un lock per blocco.
+     */
+    private void aggiornaClassifica(Rivalutazione precedente, Rivalutazione rivalutazione) {
+        boolean confrontabili = rivalutazione.stessiUtenti(precedente);
+        int numero = rivalutazione.numeroUtenti();
+        long[] utenti = new long[Math.min(numero, BLOCCO_CLASSIFICA)];
+        long[] nav = new long[utenti.length];
+        int cambiati = 0;
+        for (int i = 0; i < numero; i++) {
+            if (confrontabili && precedente.nav(i) == rivalutazione.nav(i)) {
+                continue;
+            }
+            utenti[cambiati] = rivalutazione.utenteId(i);
+            nav[cambiati] = rivalutazione.nav(i);
+            if (++cambiati == utenti.length) {
+                classifica.aggiorna(utenti, nav, cambiati);
+                cambiati = 0;
+            }
+        }
+        if (cambiati > 0) {
+            classifica.aggiorna(utenti, nav, cambiati);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package it.easyfin.app.servizio;
+
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import it.easyfin.app.archivio.ArchivioStorico;
+import it.easyfin.app.archivio.ArchivioStorico.Candela;
+import it.easyfin.app.archivio.ArchivioStorico.Intervallo;
+import it.easyfin.app.dominio.Denaro;
+import it.easyfin.app.dto.CandelaDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Servizio per lo storico dei prezzi e le candele OHLC
+ *
+ * Registra nello storico ogni tick pubblicato; le candele vengono lette
+ * già aggregate, senza ripassare i tick.
+ */
+@Service
+public class ServizioStorico implements AscoltatoreTick {
+
+    @Autowired
+    private ArchivioStorico archivioStorico;
+
+    @Autowired
+    private ServizioQuotazioni servizioQuotazioni;
+
+    @Override
+    public void dopoTick(Istantanea precedente, Istantanea nuovo) {
+        long adesso = System.currentTimeMillis();
+        for (int i = 0; i < nuovo.dimensione(); i++) {
+            archivioStorico.registra(nuovo.ticker(i), adesso, nuovo.prezzo(i));
+        }
+    }
+
+    /**
+     * Ultime candele di uno strumento per l'intervallo indicato (es. "1m", "1h")
+     */
+    public List<CandelaDto> candele(String ticker, String codiceIntervallo, int limite) {
+        String tickerNormalizzato = ticker.toUpperCase();
+        if (servizioQuotazioni.listino().ordinale(tickerNormalizzato) < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                String.format("Strumento '%s' non trovato", tickerNormalizzato));
+        }
+
+        Intervallo intervallo = Intervallo.daCodice(codiceIntervallo);
+        if (intervallo == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Intervallo non valido (1m, 5m, 15m, 1h, 1d)");
+        }
+
+        int massimo = archivioStorico.candelePerIntervallo();
+        if (limite < 1 || limite > massimo) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                String.format("Limite non valido (1-%d)", massimo));
+        }
+
+        List<Candela> candele = archivioStorico.candele(tickerNormalizzato, intervallo, limite);
+        List<CandelaDto> risultato = new ArrayList<>(candele.size());
+        for (Candela candela : candele) {
+            risultato.add(new CandelaDto(
+                candela.getInizio(),
+                Denaro.inEuro(candela.getApertura()),
+                Denaro.inEuro(candela.getMassimo()),
+                Denaro.inEuro(candela.getMinimo()),
+                Denaro.inEuro(candela.getChiusura()),
+                candela.getNumeroTick()
+            ));
+        }
+        return risultato;
+    }
+}
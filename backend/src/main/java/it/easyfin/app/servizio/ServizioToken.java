@@ -1,6 +1,7 @@
 package it.easyfin.app.servizio;
 
 import it.easyfin.app.archivio.ArchivioMemoria;
+import it.easyfin.app.archivio.Principale;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -23,17 +24,17 @@ public class ServizioToken {
     }
     
     /**
-     * Associa un token a un'email nell'archivio
+     * Associa un token al principale dell'utente nell'archivio
      */
-    public void associa(String token, String email) {
-        archivioMemoria.associa(token, email);
+    public void associa(String token, Principale principale) {
+        archivioMemoria.associa(token, principale);
     }
     
     /**
-     * Ottiene l'email associata a un token
+     * Ottiene il principale associato a un token
      */
-    public String emailPer(String token) {
-        return archivioMemoria.emailPer(token);
+    public Principale principalePer(String token) {
+        return archivioMemoria.principalePer(token);
     }
     
     /**
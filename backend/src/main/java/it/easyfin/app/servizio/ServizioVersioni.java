@@ -0,0 +1,129 @@
+package it.easyfin.app.servizio;
+
+import it.easyfin.app.archivio.ArchivioPrezzi;
+import it.easyfin.app.archivio.Principale;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contatori di versione per le risposte condizionali (ETag forti)
+ *
+ * Il listino ha già una versione, incrementata a ogni tick; qui si
+ * aggiunge un contatore per utente, incrementato alla fine di ogni
+ * transazione che ne tocca saldo, posizioni o movimenti. Gli ETag si
+ * calcolano solo da memoria (principale, contatori, listino), senza
+ * transazioni né accessi al database, e vanno letti prima di costruire
+ * la risposta: se lo stato cambia nel frattempo il client riceve dati più
+ * recenti dell'ETag, che alla richiesta successiva non corrisponde più.
+ *
+ * I contatori ripartono da zero a ogni avvio, quindi gli ETag includono
+ * l'istante di avvio: una risposta in cache da un'esecuzione precedente
+ * non risulta mai valida. Terminano con la sigla del formato negoziato,
+ * perché JSON, CBOR e Smile della stessa risorsa non possono condividere
+ * un ETag forte.
+ */
+@Service
+public class ServizioVersioni {
+
+    @Autowired
+    private ArchivioPrezzi archivioPrezzi;
+
+    private final String epoca = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<Long, AtomicLong> perUtente = new ConcurrentHashMap<>();
+
+    /**
+     * Rappresentazioni delle risorse, con la sigla che le distingue negli ETag
+     */
+    public enum Formato {
+        JSON("j", MediaType.APPLICATION_JSON),
+        CBOR("c", MediaType.APPLICATION_CBOR),
+        SMILE("s", new MediaType("application", "x-jackson-smile")),
+        COLONNARE("l", MediaType.parseMediaType(ListinoColonnare.MEDIA_TYPE));
+
+        // Nell'ordine dei convertitori: a parità di preferenza vince il JSON
+        private static final Formato[] NEGOZIABILI = {JSON, CBOR, SMILE};
+
+        private final String sigla;
+        private final MediaType tipo;
+
+        Formato(String sigla, MediaType tipo) {
+            this.sigla = sigla;
+            this.tipo = tipo;
+        }
+
+        /**
+         * Formato scelto da Spring MVC tra JSON, CBOR e Smile per l'header Accept
+         *
+         * Come la negoziazione dei convertitori: i tipi richiesti in ordine di
+         * qualità e specificità, per ognuno il primo formato compatibile. Un
+         * header assente, non valido o senza formati compatibili dà JSON.
+         */
+        public static Formato negoziato(String accept) {
+            if (accept == null || accept.isBlank()) {
+                return JSON;
+            }
+            List<MediaType> richiesti;
+            try {
+                richiesti = new ArrayList<>(MediaType.parseMediaTypes(accept));
+            } catch (InvalidMediaTypeException e) {
+                return JSON;
+            }
+            MimeTypeUtils.sortBySpecificity(richiesti);
+            for (MediaType richiesto : richiesti) {
+                for (Formato formato : NEGOZIABILI) {
+                    if (richiesto.isCompatibleWith(formato.tipo)) {
+                        return formato;
+                    }
+                }
+            }
+            return JSON;
+        }
+    }
+
+    /**
+     * Segnala che lo stato dell'utente è cambiato (dopo commit o rollback)
+     */
+    public void incrementa(long utenteId) {
+        perUtente.computeIfAbsent(utenteId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * ETag dell'elenco strumenti: cambia a ogni tick o caricamento del listino
+     */
+    public String etagListino(Formato formato) {
+        return "\"" + epoca + "-" + archivioPrezzi.istantanea().versione() + "-" + formato.sigla + "\"";
+    }
+
+    /**
+     * ETag del portafoglio: prezzi correnti e stato dell'utente
+     */
+    public String etagPortafoglio(Principale principale, Formato formato) {
+        return etagUtente(principale.getUtenteId(), formato);
+    }
+
+    /**
+     * ETag del conto: come il portafoglio
+     *
+     * Cursore e limite fanno già parte dell'URL, che le cache usano come
+     * chiave insieme all'ETag.
+     */
+    public String etagConto(Principale principale, Formato formato) {
+        return etagUtente(principale.getUtenteId(), formato);
+    }
+
+    private String etagUtente(long utenteId, Formato formato) {
+        AtomicLong versione = perUtente.get(utenteId);
+        return "\"" + epoca + "-" + archivioPrezzi.istantanea().versione() + "-" + utenteId + "-"
+            + (versione != null ? versione.get() : 0) + "-" + formato.sigla + "\"";
+    }
+}
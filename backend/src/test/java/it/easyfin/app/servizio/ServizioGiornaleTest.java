@@ -0,0 +1,167 @@
+package it.easyfin.app.servizio;
+
+import it.easyfin.app.archivio.LibroOrdini.OrdineInAttesa;
+import it.easyfin.app.archivio.Principale;
+import it.easyfin.app.archivio.VoceGiornale;
+import it.easyfin.app.dto.AcquistoRichiesta;
+import it.easyfin.app.dto.GambaOrdine;
+import it.easyfin.app.dto.OrdineDto;
+import it.easyfin.app.dto.OrdineLimiteRichiesta;
+import it.easyfin.app.dto.OrdiniBatchRichiesta;
+import it.easyfin.app.dto.SoglieRichiesta;
+import it.easyfin.app.dto.VenditaRichiesta;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Il ripristino dal giornale deve riprodurre le righe scritte durante l'esecuzione
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:giornale-test;DB_CLOSE_DELAY=-1",
+    "easyfin.tick.abilitato=false",
+    "easyfin.giornale.durabilita=ASYNC"
+})
+class ServizioGiornaleTest {
+
+    private static final String[] STATI = {"IN_ATTESA", "ESEGUITO", "ANNULLATO"};
+
+    // Coppie di acquisto e vendita: più righe di un batch del ripristino
+    private static final int ORDINI_INTERMEDI = 300;
+
+    @Autowired
+    private ServizioGiornale servizioGiornale;
+
+    @Autowired
+    private ServizioAutenticazione servizioAutenticazione;
+
+    @Autowired
+    private ServizioToken servizioToken;
+
+    @Autowired
+    private ServizioPortafoglio servizioPortafoglio;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void giornale(DynamicPropertyRegistry registro) throws IOException {
+        Path cartella = Files.createTempDirectory("giornale-test");
+        registro.add("easyfin.giornale.cartella", cartella::toString);
+    }
+
+    @Test
+    void ripristinoRiproduceLeRigheOriginali() {
+        Principale anna = registra("Anna", "anna@example.com");
+        Principale bruno = registra("Bruno", "bruno@example.com");
+
+        servizioPortafoglio.acquista(anna, new AcquistoRichiesta("AAPL", 10));
+        servizioPortafoglio.vendi(anna, new VenditaRichiesta("AAPL", 3));
+
+        // Limite eseguibile, eseguito dopo altri ordini: la sua riga resta prima. Gli ordini
+        // intermedi superano un batch del ripristino, che deve aggiornare la riga già scritta
+        OrdineDto eseguito = servizioPortafoglio.inserisciLimite(anna,
+            new OrdineLimiteRichiesta("ACQUISTO", "MSFT", 2, 500.0));
+        // Id non contigui, come quelli saltati da inserimenti annullati o presi da altre corsie
+        jdbcTemplate.execute("alter table ordini alter column id restart with 100");
+        servizioPortafoglio.acquista(bruno, new AcquistoRichiesta("GOOGL", 4));
+        for (int i = 0; i < ORDINI_INTERMEDI; i++) {
+            servizioPortafoglio.acquista(bruno, new AcquistoRichiesta("AMZN", 1));
+            servizioPortafoglio.vendi(bruno, new VenditaRichiesta("AMZN", 1));
+        }
+        assertThat(servizioPortafoglio.eseguiLimite(inAttesa(eseguito.id))).isTrue();
+
+        // Limite che resta in attesa, seguito da altri ordini
+        servizioPortafoglio.inserisciLimite(bruno, new OrdineLimiteRichiesta("ACQUISTO", "TSLA", 1, 100.0));
+        servizioPortafoglio.vendi(bruno, new VenditaRichiesta("GOOGL", 1));
+
+        OrdineDto annullato = servizioPortafoglio.inserisciLimite(anna,
+            new OrdineLimiteRichiesta("VENDITA", "AAPL", 5, 900.0));
+        servizioPortafoglio.annullaLimite(anna, annullato.id);
+
+        // Limite di vendita eseguito con P&L realizzato
+        OrdineDto vendita = servizioPortafoglio.inserisciLimite(anna,
+            new OrdineLimiteRichiesta("VENDITA", "MSFT", 1, 1.0));
+        assertThat(servizioPortafoglio.eseguiLimite(inAttesa(vendita.id))).isTrue();
+
+        servizioPortafoglio.eseguiBatch(bruno, new OrdiniBatchRichiesta(List.of(
+            new GambaOrdine("ACQUISTO", "NVDA", 2), new GambaOrdine("VENDITA", "GOOGL", 1)), "TUTTO_O_NIENTE"));
+        servizioPortafoglio.impostaSoglie(anna, "AAPL", new SoglieRichiesta(100.0, 300.0));
+
+        List<Map<String, Object>> ordini = righe("select * from ordini order by id");
+        List<Map<String, Object>> movimenti = righe("select * from movimenti_cassa order by id");
+        List<Map<String, Object>> conti = righe("select * from conti order by id");
+        List<Map<String, Object>> utenti = righe("select * from utenti order by id");
+        // Le posizioni sono riscritte solo nello stato finale, con id nuovi
+        String selezionaPosizioni = "select utente_id, strumento_ticker, quantita, prezzo_medio, stop_loss, take_profit " +
+                                    "from posizioni order by utente_id, strumento_ticker";
+        List<Map<String, Object>> posizioni = righe(selezionaPosizioni);
+        assertThat(ordini).extracting(riga -> riga.get("STATO")).contains((Object[]) STATI);
+
+        svuotaDatabase();
+        assertThat(servizioGiornale.ripristina()).isPositive();
+
+        assertThat(righe("select * from ordini order by id")).isEqualTo(ordini);
+        assertThat(righe("select * from movimenti_cassa order by id")).isEqualTo(movimenti);
+        assertThat(righe("select * from conti order by id")).isEqualTo(conti);
+        assertThat(righe("select * from utenti order by id")).isEqualTo(utenti);
+        assertThat(righe(selezionaPosizioni)).isEqualTo(posizioni);
+    }
+
+    @Test
+    void passwordInChiaroCifrataAlLoginResta() {
+        registra("Carla", "carla@example.com");
+        long utenteId = jdbcTemplate.queryForObject("select id from utenti where email = 'carla@example.com'", Long.class);
+        // Password salvata in chiaro, come prima dell'introduzione dell'hash
+        jdbcTemplate.update("update utenti set password = 'segreta' where id = ?", utenteId);
+        servizioGiornale.annota(VoceGiornale.password(utenteId, "segreta"));
+
+        servizioAutenticazione.login("carla@example.com", "segreta");
+        String cifrata = password(utenteId);
+        assertThat(cifrata).startsWith("pbkdf2-sha256$");
+
+        svuotaDatabase();
+        servizioGiornale.ripristina();
+
+        assertThat(password(utenteId)).isEqualTo(cifrata);
+        assertThat(servizioAutenticazione.login("carla@example.com", "segreta").token).isNotNull();
+    }
+
+    private String password(long utenteId) {
+        return jdbcTemplate.queryForObject("select password from utenti where id = ?", String.class, utenteId);
+    }
+
+    private Principale registra(String nome, String email) {
+        servizioAutenticazione.registra(nome, email, "password");
+        return servizioToken.principalePer(servizioAutenticazione.login(email, "password").token);
+    }
+
+    private OrdineInAttesa inAttesa(long ordineId) {
+        return servizioPortafoglio.ordiniInAttesa().stream()
+            .filter(ordine -> ordine.getOrdineId() == ordineId)
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private List<Map<String, Object>> righe(String sql) {
+        return jdbcTemplate.queryForList(sql);
+    }
+
+    private void svuotaDatabase() {
+        for (String tabella : List.of("posizioni", "ordini", "movimenti_cassa", "utenti", "conti")) {
+            jdbcTemplate.execute("delete from " + tabella);
+            jdbcTemplate.execute("alter table " + tabella + " alter column id restart with 1");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package it.easyfin.benchmark;
+
+import it.easyfin.app.archivio.ArchivioMemoria;
+import it.easyfin.app.archivio.Principale;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ricerca delle sessioni nell'archivio in memoria
+ *
+ * Non avvia Spring: l'archivio viene costruito direttamente, così la misura
+ * riguarda solo la mappa delle sessioni e il controllo delle scadenze.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArchivioMemoriaBenchmark {
+
+    @Param({"1000", "100000"})
+    public int sessioni;
+
+    ArchivioMemoria archivio;
+    String[] token;
+
+    @Setup(Level.Trial)
+    public void avvia() {
+        archivio = new ArchivioMemoria(1_800_000L, 28_800_000L, 1000L, 512);
+        token = new String[sessioni];
+        for (int i = 0; i < sessioni; i++) {
+            token[i] = UUID.randomUUID().toString();
+            archivio.associa(token[i], new Principale(i, i, "utente" + i + "@bench.easyfin.it"));
+        }
+    }
+
+    @Benchmark
+    public Principale principaleTrovato() {
+        return archivio.principalePer(token[ThreadLocalRandom.current().nextInt(sessioni)]);
+    }
+
+    @Benchmark
+    public Principale principaleMancante() {
+        return archivio.principalePer("token-inesistente");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Principale principaleConcorrente() {
+        return archivio.principalePer(token[ThreadLocalRandom.current().nextInt(sessioni)]);
+    }
+}
@@ -0,0 +1,93 @@
+package it.easyfin.benchmark;
+
+import it.easyfin.app.inizializzazione.CaricatoreStrumenti;
+import it.easyfin.app.servizio.ServizioQuotazioni;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Avvio completo del backend con un universo di strumenti grande
+ *
+ * Ogni misura avvia un contesto Spring su un database H2 nuovo: il tempo
+ * comprende l'avvio del contesto (costante) più lettura del file, scritture
+ * batch e caricamento del listino. Il costo per 10.000 strumenti si ricava
+ * dalla differenza tra le due dimensioni dell'universo.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AvvioBenchmark {
+
+    @Param({"10000", "50000"})
+    public int strumenti;
+
+    @Param({"csv", "bin"})
+    public String formato;
+
+    Path file;
+
+    @Setup(Level.Trial)
+    public void preparaFile() throws IOException {
+        file = Files.createTempFile("strumenti-", "." + formato);
+        Random random = new Random(42);
+        if (formato.equals("bin")) {
+            try (DataOutputStream uscita = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                uscita.writeInt(CaricatoreStrumenti.MAGICO_BINARIO);
+                uscita.writeInt(strumenti);
+                for (int i = 0; i < strumenti; i++) {
+                    uscita.writeUTF("T" + i);
+                    uscita.writeUTF("Strumento " + i + ", Inc.");
+                    uscita.writeLong(100 + random.nextInt(100_000));
+                }
+            }
+        } else {
+            try (BufferedWriter uscita = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                uscita.write("ticker,nome,prezzo\n");
+                for (int i = 0; i < strumenti; i++) {
+                    int centesimi = 100 + random.nextInt(100_000);
+                    uscita.write("T" + i + ",Strumento " + i + ", Inc.," + centesimi / 100 + "."
+                                 + String.format("%02d", centesimi % 100) + "\n");
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void eliminaFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int avvio() {
+        try (ContestoEasyFin contesto = new ContestoEasyFin(
+                "easyfin.strumenti.file=file:" + file.toAbsolutePath(),
+                // Database nuovo a ogni avvio, chiuso con il pool di connessioni
+                "spring.datasource.url=jdbc:h2:mem:avvio-" + System.nanoTime())) {
+            return contesto.bean(ServizioQuotazioni.class).listino().dimensione();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package it.easyfin.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carico HTTP concorrente: thread di piattaforma contro thread virtuali
+ *
+ * Il server viene avviato con pochi thread Tomcat, così in modalità
+ * piattaforma le richieste si accodano al pool mentre con i thread
+ * virtuali (profilo "virtuale", richiede Java 21) il limite è il pool
+ * di connessioni. Su una JVM precedente la prova con virtuali=true
+ * fallisce subito; per la sola modalità piattaforma: -p virtuali=false. Misura throughput e distribuzione delle latenze di
+ * letture del portafoglio e di ordini, con un utente per thread client.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(128)
+public class CaricoHttpBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        @Param({"false", "true"})
+        public boolean virtuali;
+
+        @Param({"20"})
+        public int threadTomcat;
+
+        ContestoEasyFin contesto;
+        HttpClient client;
+        String base;
+        String[] token;
+
+        @Setup(Level.Trial)
+        public void avvia(ThreadParams parametri) {
+            // Sotto Java 21 FabbricaThread ripiega sui thread di piattaforma: il confronto non avrebbe senso
+            if (virtuali && Runtime.version().feature() < 21) {
+                throw new IllegalStateException("I thread virtuali richiedono Java 21, in uso " + Runtime.version());
+            }
+            contesto = ContestoEasyFin.conServerWeb(
+                "server.tomcat.threads.max=" + threadTomcat,
+                "spring.profiles.active=" + (virtuali ? "virtuale" : "default"));
+            client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            base = "http://localhost:" + contesto.porta() + "/api";
+
+            token = contesto.registraUtenti("http", parametri.getThreadCount());
+            for (String utente : token) {
+                contesto.apriPosizioni(utente, 3, 5);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void chiudi() {
+            contesto.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Utente {
+
+        HttpRequest portafoglio;
+        HttpRequest acquisto;
+        HttpRequest vendita;
+
+        @Setup(Level.Trial)
+        public void prepara(Server server, ThreadParams parametri) {
+            String autorizzazione = "Bearer " + server.token[parametri.getThreadIndex()];
+            portafoglio = HttpRequest.newBuilder(URI.create(server.base + "/portafoglio/"))
+                .header("Authorization", autorizzazione)
+                .GET()
+                .build();
+            acquisto = ordine(server, autorizzazione, "acquisto");
+            vendita = ordine(server, autorizzazione, "vendita");
+        }
+
+        private static HttpRequest ordine(Server server, String autorizzazione, String tipo) {
+            return HttpRequest.newBuilder(URI.create(server.base + "/portafoglio/ordini/" + tipo))
+                .header("Authorization", autorizzazione)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"ticker\":\"AAPL\",\"quantita\":1}"))
+                .build();
+        }
+    }
+
+    @Benchmark
+    public String letturaPortafoglio(Server server, Utente utente) throws IOException, InterruptedException {
+        return invia(server, utente.portafoglio);
+    }
+
+    @Benchmark
+    public String acquistoEVendita(Server server, Utente utente) throws IOException, InterruptedException {
+        invia(server, utente.acquisto);
+        return invia(server, utente.vendita);
+    }
+
+    private static String invia(Server server, HttpRequest richiesta) throws IOException, InterruptedException {
+        HttpResponse<String> risposta = server.client.send(richiesta, HttpResponse.BodyHandlers.ofString());
+        if (risposta.statusCode() != 200) {
+            throw new IllegalStateException("Risposta " + risposta.statusCode() + ": " + risposta.body());
+        }
+        return risposta.body();
+    }
+}
@@ -0,0 +1,146 @@
+package it.easyfin.benchmark;
+
+import it.easyfin.app.Application;
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import it.easyfin.app.archivio.Principale;
+import it.easyfin.app.dominio.Denaro;
+import it.easyfin.app.dto.AcquistoRichiesta;
+import it.easyfin.app.servizio.ServizioAutenticazione;
+import it.easyfin.app.servizio.ServizioPortafoglio;
+import it.easyfin.app.servizio.ServizioQuotazioni;
+import it.easyfin.app.servizio.ServizioToken;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contesto Spring del backend per i benchmark, di norma senza server web
+ *
+ * Usa lo stesso H2 in memoria dell'applicazione, con log SQL disattivati
+ * per non misurare il costo della stampa delle query e tick automatici
+ * spenti perché i benchmark li invocano esplicitamente. Ogni contesto
+ * scrive su un giornale degli ordini nuovo, così non rilegge le esecuzioni
+ * precedenti.
+ */
+public final class ContestoEasyFin implements AutoCloseable {
+
+    private final ConfigurableApplicationContext contesto;
+
+    public ContestoEasyFin(String... proprieta) {
+        this(WebApplicationType.NONE, proprieta);
+    }
+
+    /**
+     * Contesto con server web su porta casuale, per i benchmark HTTP
+     */
+    public static ContestoEasyFin conServerWeb(String... proprieta) {
+        String[] conPorta = new String[proprieta.length + 1];
+        System.arraycopy(proprieta, 0, conPorta, 0, proprieta.length);
+        conPorta[proprieta.length] = "server.port=0";
+        return new ContestoEasyFin(WebApplicationType.SERVLET, conPorta);
+    }
+
+    private ContestoEasyFin(WebApplicationType tipo, String... proprieta) {
+        String[] base = {
+            "spring.jpa.show-sql=false",
+            "logging.level.org.hibernate.SQL=WARN",
+            "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+            "logging.level.it.easyfin.app=WARN",
+            "spring.h2.console.enabled=false",
+            "easyfin.tick.abilitato=false",
+            "easyfin.storico.cartella=target/storico",
+            // Hash leggero: i benchmark registrano migliaia di utenti
+            "easyfin.password.iterazioni=1000",
+            "easyfin.giornale.cartella=target/giornale-" + System.nanoTime()
+        };
+        String[] tutte = new String[base.length + proprieta.length];
+        System.arraycopy(base, 0, tutte, 0, base.length);
+        System.arraycopy(proprieta, 0, tutte, base.length, proprieta.length);
+
+        this.contesto = new SpringApplicationBuilder(Application.class)
+            .web(tipo)
+            .properties(tutte)
+            .run();
+    }
+
+    /**
+     * Porta del server web (solo per i contesti creati con conServerWeb)
+     */
+    public int porta() {
+        return ((WebServerApplicationContext) contesto).getWebServer().getPort();
+    }
+
+    public <T> T bean(Class<T> tipo) {
+        return contesto.getBean(tipo);
+    }
+
+    /**
+     * Registra n utenti e restituisce i loro token di sessione
+     */
+    public String[] registraUtenti(String prefisso, int n) {
+        ServizioAutenticazione autenticazione = bean(ServizioAutenticazione.class);
+        String[] token = new String[n];
+        for (int i = 0; i < n; i++) {
+            String email = prefisso + i + "@bench.easyfin.it";
+            autenticazione.registra("Utente " + i, email, "password");
+            token[i] = autenticazione.login(email, "password").token;
+        }
+        return token;
+    }
+
+    /**
+     * Principale associato a un token di sessione
+     */
+    public Principale principale(String token) {
+        return bean(ServizioToken.class).principalePer(token);
+    }
+
+    /**
+     * Apre una posizione sui primi n strumenti del listino
+     */
+    public void apriPosizioni(String token, int n, int quantita) {
+        ServizioPortafoglio portafoglio = bean(ServizioPortafoglio.class);
+        Principale principale = principale(token);
+        Istantanea listino = bean(ServizioQuotazioni.class).listino();
+        for (int i = 0; i < Math.min(n, listino.dimensione()); i++) {
+            portafoglio.acquista(principale, new AcquistoRichiesta(listino.ticker(i), quantita));
+        }
+    }
+
+    /**
+     * Inserisce direttamente n ordini eseguiti nello storico dell'utente
+     *
+     * Gli ordini non toccano saldo e posizioni: servono solo a dare allo
+     * storico una dimensione realistica.
+     */
+    public void popolaStorico(String token, int n) {
+        long utenteId = principale(token).getUtenteId();
+        Istantanea listino = bean(ServizioQuotazioni.class).listino();
+        LocalDate oggi = LocalDate.now();
+
+        List<Object[]> righe = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int ordinale = i % listino.dimensione();
+            righe.add(new Object[] {
+                utenteId, i % 2 == 0 ? "ACQUISTO" : "VENDITA", listino.ticker(ordinale), 1 + i % 10,
+                Denaro.inEuro(listino.prezzo(ordinale)), Date.valueOf(oggi.minusDays(i % 365)), "ESEGUITO",
+                i % 2 == 0 ? null : 0.0
+            });
+        }
+        bean(JdbcTemplate.class).batchUpdate(
+            "insert into ordini (utente_id, tipo, ticker, quantita, prezzo_esecuzione, data, stato, pnl_realizzato) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?)", righe);
+    }
+
+    @Override
+    public void close() {
+        contesto.close();
+    }
+}
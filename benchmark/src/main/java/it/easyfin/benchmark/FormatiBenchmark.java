@@ -0,0 +1,140 @@
+package it.easyfin.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import it.easyfin.app.archivio.ArchivioPrezzi;
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import it.easyfin.app.dominio.Denaro;
+import it.easyfin.app.dto.PortafoglioRisposta;
+import it.easyfin.app.dto.PosizioneDto;
+import it.easyfin.app.dto.StrumentoDto;
+import it.easyfin.app.dto.TotaliDto;
+import it.easyfin.app.servizio.ListinoColonnare;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listino e portafoglio in JSON, CBOR, Smile e nella codifica colonnare
+ *
+ * Non avvia Spring: misura solo serializzazione e lettura degli stessi DTO
+ * che gli endpoint restituiscono. I byte sul filo di ogni formato vengono
+ * stampati alla fine del trial, accanto ai tempi.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatiBenchmark {
+
+    private static final int POSIZIONI = 20;
+
+    @Param({"100", "10000"})
+    public int strumenti;
+
+    @Param({"json", "cbor", "smile"})
+    public String formato;
+
+    ObjectMapper mapper;
+    Istantanea listino;
+    List<StrumentoDto> elenco;
+    PortafoglioRisposta portafoglio;
+
+    byte[] elencoCodificato;
+    byte[] portafoglioCodificato;
+    byte[] colonnare;
+
+    @Setup(Level.Trial)
+    public void avvia() throws Exception {
+        switch (formato) {
+            case "cbor" -> mapper = new ObjectMapper(new CBORFactory());
+            case "smile" -> mapper = new ObjectMapper(new SmileFactory());
+            default -> mapper = new ObjectMapper();
+        }
+
+        Random random = new Random(42);
+        String[] ticker = new String[strumenti];
+        String[] nomi = new String[strumenti];
+        long[] prezzi = new long[strumenti];
+        elenco = new ArrayList<>(strumenti);
+        for (int i = 0; i < strumenti; i++) {
+            ticker[i] = "T" + i;
+            nomi[i] = "Strumento " + i + " Inc.";
+            prezzi[i] = 100 + random.nextInt(100_000);
+            elenco.add(new StrumentoDto(ticker[i], nomi[i], Denaro.inEuro(prezzi[i])));
+        }
+        ArchivioPrezzi archivio = new ArchivioPrezzi();
+        archivio.carica(ticker, nomi, prezzi);
+        listino = archivio.istantanea();
+
+        List<PosizioneDto> posizioni = new ArrayList<>(POSIZIONI);
+        for (int i = 0; i < POSIZIONI; i++) {
+            double medio = Denaro.inEuro(prezzi[i % strumenti]);
+            double corrente = medio * 1.013;
+            posizioni.add(new PosizioneDto(ticker[i % strumenti], 10 + i, medio, corrente,
+                                           corrente * (10 + i), (corrente - medio) * (10 + i)));
+        }
+        portafoglio = new PortafoglioRisposta(posizioni, new TotaliDto(12_345.67, 4_321.09, 16_666.76, 123.45));
+
+        elencoCodificato = mapper.writeValueAsBytes(elenco);
+        portafoglioCodificato = mapper.writeValueAsBytes(portafoglio);
+        colonnare = ListinoColonnare.codifica(listino).dati();
+    }
+
+    @TearDown(Level.Trial)
+    public void riepilogo() {
+        System.out.printf("%n[%s, %d strumenti] listino: %d byte (colonnare %d byte), portafoglio: %d byte%n",
+            formato, strumenti, elencoCodificato.length, colonnare.length, portafoglioCodificato.length);
+    }
+
+    @Benchmark
+    public byte[] scriviListino() throws Exception {
+        return mapper.writeValueAsBytes(elenco);
+    }
+
+    @Benchmark
+    public StrumentoDto[] leggiListino() throws Exception {
+        return mapper.readValue(elencoCodificato, StrumentoDto[].class);
+    }
+
+    @Benchmark
+    public byte[] scriviPortafoglio() throws Exception {
+        return mapper.writeValueAsBytes(portafoglio);
+    }
+
+    @Benchmark
+    public PortafoglioRisposta leggiPortafoglio() throws Exception {
+        return mapper.readValue(portafoglioCodificato, PortafoglioRisposta.class);
+    }
+
+    /**
+     * Codifica colonnare dall'istantanea (indipendente dal formato Jackson)
+     */
+    @Benchmark
+    public byte[] scriviListinoColonnare() {
+        return ListinoColonnare.codifica(listino).dati();
+    }
+
+    @Benchmark
+    public List<StrumentoDto> leggiListinoColonnare() {
+        return ListinoColonnare.decodifica(colonnare);
+    }
+}
@@ -0,0 +1,120 @@
+package it.easyfin.benchmark;
+
+import it.easyfin.app.archivio.ArchivioValutazioni;
+import it.easyfin.app.archivio.Principale;
+import it.easyfin.app.dto.AcquistoRichiesta;
+import it.easyfin.app.dto.PortafoglioRisposta;
+import it.easyfin.app.dto.TotaliDto;
+import it.easyfin.app.dto.VenditaRichiesta;
+import it.easyfin.app.servizio.ServizioPortafoglio;
+import it.easyfin.app.servizio.ServizioQuotazioni;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latenza dei percorsi del portafoglio con dati di dimensione realistica
+ *
+ * Ogni utente ha una posizione su ciascuno dei primi strumenti del
+ * listino e uno storico ordini pre-caricato. Le invocazioni ruotano
+ * sugli utenti, così la misura non resta su un solo record caldo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PortafoglioBenchmark {
+
+    @Param({"100", "1000"})
+    public int utenti;
+
+    @Param({"1", "7"})
+    public int posizioni;
+
+    @Param({"100"})
+    public int ordiniPerUtente;
+
+    ContestoEasyFin contesto;
+    ServizioPortafoglio servizioPortafoglio;
+    ArchivioValutazioni archivioValutazioni;
+    String[] token;
+    Principale[] principali;
+    AcquistoRichiesta acquisto;
+    VenditaRichiesta vendita;
+    int prossimo;
+
+    @Setup(Level.Trial)
+    public void avvia() {
+        contesto = new ContestoEasyFin();
+        servizioPortafoglio = contesto.bean(ServizioPortafoglio.class);
+        archivioValutazioni = contesto.bean(ArchivioValutazioni.class);
+
+        token = contesto.registraUtenti("port", utenti);
+        principali = new Principale[utenti];
+        for (int i = 0; i < utenti; i++) {
+            contesto.apriPosizioni(token[i], posizioni, 5);
+            contesto.popolaStorico(token[i], ordiniPerUtente);
+            principali[i] = contesto.principale(token[i]);
+        }
+
+        // Il primo strumento è detenuto da tutti: acquisto e vendita lasciano la posizione invariata
+        String ticker = contesto.bean(ServizioQuotazioni.class).listino().ticker(0);
+        acquisto = new AcquistoRichiesta(ticker, 1);
+        vendita = new VenditaRichiesta(ticker, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void chiudi() {
+        contesto.close();
+    }
+
+    private int utente() {
+        int indice = prossimo;
+        prossimo = indice + 1 == utenti ? 0 : indice + 1;
+        return indice;
+    }
+
+    @Benchmark
+    public PortafoglioRisposta acquistaVendi() {
+        Principale utente = principali[utente()];
+        servizioPortafoglio.acquista(utente, acquisto);
+        return servizioPortafoglio.vendi(utente, vendita);
+    }
+
+    @Benchmark
+    public PortafoglioRisposta portafoglioCaldo() {
+        return servizioPortafoglio.portafoglioPer(principali[utente()]);
+    }
+
+    /**
+     * Portafoglio con valutazione assente dalla cache: include la lettura dal database
+     */
+    @Benchmark
+    public PortafoglioRisposta portafoglioFreddo() {
+        int indice = utente();
+        archivioValutazioni.rimuovi(principali[indice].getUtenteId());
+        return servizioPortafoglio.portafoglioPer(principali[indice]);
+    }
+
+    /**
+     * Totali del conto (calcolaTotali) a partire dal principale della sessione
+     */
+    @Benchmark
+    public TotaliDto totali() {
+        return servizioPortafoglio.totaliPer(principali[utente()]);
+    }
+}
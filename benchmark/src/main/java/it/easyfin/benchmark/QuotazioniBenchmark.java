@@ -0,0 +1,77 @@
+package it.easyfin.benchmark;
+
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import it.easyfin.app.dominio.Strumento;
+import it.easyfin.app.servizio.ServizioQuotazioni;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo di un tick di mercato al crescere degli utenti che detengono strumenti
+ *
+ * Il tick rivaluta le valutazioni in memoria dei detentori dei ticker
+ * variati: con zero utenti misura solo generazione e pubblicazione dei prezzi.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QuotazioniBenchmark {
+
+    @Param({"0", "1000"})
+    public int utenti;
+
+    @Param({"7"})
+    public int posizioni;
+
+    ContestoEasyFin contesto;
+    ServizioQuotazioni servizioQuotazioni;
+
+    @Setup(Level.Trial)
+    public void avvia() {
+        contesto = new ContestoEasyFin();
+        servizioQuotazioni = contesto.bean(ServizioQuotazioni.class);
+
+        String[] token = contesto.registraUtenti("quot", utenti);
+        for (String utente : token) {
+            contesto.apriPosizioni(utente, posizioni, 5);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void chiudi() {
+        contesto.close();
+    }
+
+    /**
+     * Tick completo come da POST /api/quotazioni/aggiorna, con conversione in strumenti
+     */
+    @Benchmark
+    public List<Strumento> aggiornaPrezziConRumore() {
+        return servizioQuotazioni.aggiornaPrezziConRumore();
+    }
+
+    /**
+     * Tick del motore automatico, senza conversione del risultato
+     */
+    @Benchmark
+    public Istantanea eseguiTick() {
+        return servizioQuotazioni.eseguiTick();
+    }
+}
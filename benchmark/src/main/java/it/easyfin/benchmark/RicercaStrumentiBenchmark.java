@@ -0,0 +1,61 @@
+package it.easyfin.benchmark;
+
+import it.easyfin.app.archivio.IndiceStrumenti;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ricerca degli strumenti per l'autocompletamento
+ *
+ * Non avvia Spring: l'indice viene popolato direttamente con nomi
+ * composti da parole casuali, alcune molto frequenti ("Holding", "Group"),
+ * che sono il caso peggiore per le liste di ticker per parola.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RicercaStrumentiBenchmark {
+
+    private static final String[] SUFFISSI = {"Holding", "Group", "Inc.", "S.p.A.", "Corporation"};
+
+    @Param({"20000"})
+    public int strumenti;
+
+    @Param({"a", "t12", "hold", "holdnig", "societa gro"})
+    public String testo;
+
+    IndiceStrumenti indice;
+
+    @Setup(Level.Trial)
+    public void avvia() {
+        Random random = new Random(42);
+        indice = new IndiceStrumenti();
+        for (int i = 0; i < strumenti; i++) {
+            String nome = Integer.toString(random.nextInt(1 << 30), 36) + " Società "
+                + SUFFISSI[random.nextInt(SUFFISSI.length)];
+            indice.aggiungi("T" + i, nome);
+        }
+    }
+
+    @Benchmark
+    public List<String> cerca() {
+        return indice.cerca(testo, 10);
+    }
+}
@@ -0,0 +1,111 @@
+package it.easyfin.benchmark;
+
+import it.easyfin.app.archivio.ArchivioPosizioni;
+import it.easyfin.app.archivio.ArchivioPosizioni.IstantaneaPosizioni;
+import it.easyfin.app.archivio.ArchivioPosizioni.Rivalutazione;
+import it.easyfin.app.archivio.ArchivioPrezzi;
+import it.easyfin.app.archivio.ArchivioPrezzi.Istantanea;
+import it.easyfin.app.dominio.Denaro;
+import it.easyfin.app.dominio.Strumento;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rivalutazione di tutti i conti dopo un tick
+ *
+ * Non avvia Spring: listino e posizioni vengono costruiti direttamente.
+ * Con 100.000 utenti il risultato va confrontato con l'intervallo dei
+ * tick (1 s); il pool con un solo thread misura il calcolo sequenziale.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RivalutazioneBenchmark {
+
+    private static final int STRUMENTI = 500;
+    private static final int POSIZIONI_PER_UTENTE = 8;
+
+    @Param({"10000", "100000"})
+    public int utenti;
+
+    ArchivioPosizioni archivio;
+    Istantanea listino;
+    long[] prezzi;
+    ForkJoinPool parallelo;
+    ForkJoinPool sequenziale;
+    long saldo;
+
+    @Setup(Level.Trial)
+    public void avvia() {
+        Random random = new Random(42);
+        List<Strumento> strumenti = new ArrayList<>(STRUMENTI);
+        for (int i = 0; i < STRUMENTI; i++) {
+            strumenti.add(new Strumento("T" + i, "Strumento " + i, Denaro.daEuro(10 + random.nextInt(500))));
+        }
+        ArchivioPrezzi archivioPrezzi = new ArchivioPrezzi();
+        archivioPrezzi.carica(strumenti);
+        listino = archivioPrezzi.istantanea();
+        prezzi = listino.copiaPrezzi();
+
+        archivio = new ArchivioPosizioni();
+        for (int u = 0; u < utenti; u++) {
+            archivio.applicaSaldo(u, Denaro.daEuro(random.nextInt(100_000)));
+            for (int p = 0; p < POSIZIONI_PER_UTENTE; p++) {
+                archivio.applicaPosizione(u, "T" + random.nextInt(STRUMENTI), 1 + random.nextInt(100),
+                    Denaro.daEuro(10 + random.nextInt(500)));
+            }
+        }
+        // Prima compattazione fuori dalla misura, come a regime senza ordini tra due tick
+        archivio.istantanea(listino);
+
+        parallelo = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        sequenziale = new ForkJoinPool(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void arresta() {
+        parallelo.shutdownNow();
+        sequenziale.shutdownNow();
+    }
+
+    @Benchmark
+    public Rivalutazione rivalutazioneParallela() {
+        IstantaneaPosizioni posizioni = archivio.istantanea(listino);
+        return posizioni.rivaluta(parallelo, prezzi, listino.versione());
+    }
+
+    @Benchmark
+    public Rivalutazione rivalutazioneSequenziale() {
+        IstantaneaPosizioni posizioni = archivio.istantanea(listino);
+        return posizioni.rivaluta(sequenziale, prezzi, listino.versione());
+    }
+
+    /**
+     * Ricostruzione dell'istantanea colonnare dopo una modifica
+     */
+    @Benchmark
+    public IstantaneaPosizioni compattazione() {
+        archivio.applicaSaldo(0, ++saldo);
+        return archivio.istantanea(listino);
+    }
+}
@@ -0,0 +1,92 @@
+package it.easyfin.benchmark;
+
+import it.easyfin.app.archivio.Principale;
+import it.easyfin.app.dto.AcquistoRichiesta;
+import it.easyfin.app.dto.PortafoglioRisposta;
+import it.easyfin.app.dto.VenditaRichiesta;
+import it.easyfin.app.servizio.MotoreOrdini;
+import it.easyfin.app.servizio.ServizioPortafoglio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput degli ordini: percorso diretto contro corsie per utente
+ *
+ * Ogni invocazione esegue un acquisto e una vendita di un'azione, così
+ * saldo e posizioni restano stabili per tutta la misura. Ogni thread JMH
+ * opera su un utente diverso: il confronto misura il costo del passaggio
+ * nella corsia rispetto alla chiamata diretta al servizio transazionale.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class SequenziatoreOrdiniBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Sistema {
+
+        @Param({"4"})
+        public String corsie;
+
+        ContestoEasyFin contesto;
+        ServizioPortafoglio servizioPortafoglio;
+        MotoreOrdini motoreOrdini;
+        String[] token;
+
+        @Setup(Level.Trial)
+        public void avvia(ThreadParams parametri) {
+            contesto = new ContestoEasyFin("easyfin.ordini.corsie=" + corsie);
+            servizioPortafoglio = contesto.bean(ServizioPortafoglio.class);
+            motoreOrdini = contesto.bean(MotoreOrdini.class);
+            token = contesto.registraUtenti("seq", parametri.getThreadCount());
+        }
+
+        @TearDown(Level.Trial)
+        public void chiudi() {
+            contesto.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Utente {
+
+        Principale principale;
+        final AcquistoRichiesta acquisto = new AcquistoRichiesta("AAPL", 1);
+        final VenditaRichiesta vendita = new VenditaRichiesta("AAPL", 1);
+
+        @Setup(Level.Trial)
+        public void scegli(Sistema sistema, ThreadParams parametri) {
+            principale = sistema.contesto.principale(sistema.token[parametri.getThreadIndex()]);
+        }
+    }
+
+    @Benchmark
+    public PortafoglioRisposta diretto(Sistema sistema, Utente utente) {
+        sistema.servizioPortafoglio.acquista(utente.principale, utente.acquisto);
+        return sistema.servizioPortafoglio.vendi(utente.principale, utente.vendita);
+    }
+
+    @Benchmark
+    public PortafoglioRisposta sequenziato(Sistema sistema, Utente utente) {
+        sistema.motoreOrdini.acquista(utente.principale, utente.acquisto);
+        return sistema.motoreOrdini.vendi(utente.principale, utente.vendita);
+    }
+}
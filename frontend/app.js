@@ -34,6 +34,12 @@ let strumenti = [];
  */
 let posizioni = [];
 
+/**
+ * Connessione al flusso SSE delle quotazioni
+ * @type {EventSource|null}
+ */
+let flussoQuotazioni = null;
+
 // ============================================================================
 // RIFERIMENTI ELEMENTI DOM
 // ============================================================================
@@ -275,6 +281,8 @@ function logout() {
     document.getElementById('login-form').reset();
     document.getElementById('register-form').reset();
     
+    chiudiFlussoQuotazioni();
+
     // Pulisce le cache dei dati
     strumenti = [];
     posizioni = [];
@@ -364,6 +372,43 @@ function mostraTab(tab) {
 async function caricaDatiIniziali() {
     await caricaStrumenti();
     caricaDashboard();
+    avviaFlussoQuotazioni();
+}
+
+/**
+ * Si iscrive al flusso SSE delle quotazioni e aggiorna i prezzi in pagina
+ * L'evento contiene il listino completo oppure solo gli strumenti variati
+ */
+function avviaFlussoQuotazioni() {
+    if (flussoQuotazioni) {
+        return;
+    }
+
+    flussoQuotazioni = new EventSource(`${API_BASE_URL}/quotazioni/stream`);
+    flussoQuotazioni.addEventListener('quotazioni', function(evento) {
+        const aggiornamento = JSON.parse(evento.data);
+        aggiornamento.quotazioni.forEach(quotazione => {
+            const strumento = strumenti.find(s => s.ticker === quotazione.ticker);
+            if (strumento) {
+                strumento.prezzoCorrente = quotazione.prezzoCorrente;
+                const cella = document.querySelector(`#strumenti-tbody td[data-prezzo="${quotazione.ticker}"]`);
+                if (cella) {
+                    cella.textContent = formattaImporto(quotazione.prezzoCorrente);
+                }
+            }
+        });
+        aggiornaPrezzoAcquisto();
+    });
+}
+
+/**
+ * Chiude la connessione al flusso delle quotazioni
+ */
+function chiudiFlussoQuotazioni() {
+    if (flussoQuotazioni) {
+        flussoQuotazioni.close();
+        flussoQuotazioni = null;
+    }
 }
 
 /**
@@ -403,7 +448,7 @@ async function caricaStrumenti() {
                 <tr>
                     <td><strong>${strumento.ticker}</strong></td>
                     <td>${strumento.nome}</td>
-                    <td>${formattaImporto(strumento.prezzoCorrente)}</td>
+                    <td data-prezzo="${strumento.ticker}">${formattaImporto(strumento.prezzoCorrente)}</td>
                     <td>
                         <button class="btn btn-primary btn-small" onclick="aggiornaPrezzi()">
                             <i class="fas fa-sync-alt"></i>